@@ -1,33 +1,122 @@
 package io.jmix.petclinic;
 
+import io.jmix.core.DataManager;
+import io.jmix.core.MetadataTools;
+import io.jmix.core.event.EntityChangedEvent;
 import io.jmix.petclinic.entity.User;
-import io.jmix.petclinic.security.DatabaseUserRepository;
 import io.jmix.petclinic.security.NurseRole;
-import io.jmix.security.role.assignment.RoleAssignment;
-import io.jmix.security.role.assignment.RoleAssignmentRepository;
-import io.jmix.security.role.assignment.RoleAssignmentRoleType;
+import io.jmix.petclinic.security.RoleMembershipIndex;
+import io.jmix.securitydata.entity.RoleAssignmentEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Access to the employees of the petclinic.
+ * <p>
+ * The users per role are cached. The cache is invalidated when role assignments or users change. Every caller gets
+ * copies of the cached users, so that a user changed by one UI session or thread is not seen by the others.
+ */
 @Component("petclinic_EmployeeRepository")
 public class EmployeeRepository {
 
+    private static final Logger log = LoggerFactory.getLogger(EmployeeRepository.class);
+
+    @Autowired
+    private RoleMembershipIndex roleMembershipIndex;
     @Autowired
-    private RoleAssignmentRepository roleAssignmentRepository;
+    private DataManager dataManager;
     @Autowired
-    private DatabaseUserRepository databaseUserRepository;
+    private MetadataTools metadataTools;
 
+    private final Map<String, CachedUsers> cachedUsersByRole = new ConcurrentHashMap<>();
+    private final AtomicLong cacheGeneration = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    /**
+     * @return copies of all users with the nurse role. The returned list must not be modified.
+     */
     public List<User> findAllNurses() {
-        return roleAssignmentRepository.getAllAssignments()
-                .stream()
-                .filter(roleAssignment -> roleAssignment.getRoleType().equals(RoleAssignmentRoleType.RESOURCE))
-                .filter(roleAssignment -> roleAssignment.getRoleCode().equals(NurseRole.CODE))
-                .map(RoleAssignment::getUsername)
-                .distinct()
-                .map(username -> databaseUserRepository.loadUserByUsername(username))
-                .collect(Collectors.toList());
-    }
-}
\ No newline at end of file
+        return findAllByRole(NurseRole.CODE);
+    }
+
+    /**
+     * @return copies of all users that have the resource role with the given code assigned, ordered by username.
+     * The returned list must not be modified.
+     */
+    public List<User> findAllByRole(String roleCode) {
+        CachedUsers cached = cachedUsersByRole.get(roleCode);
+        // entries loaded before the last invalidation are outdated, even if they were stored after it
+        if (cached != null && cached.generation() == cacheGeneration.get()) {
+            cacheHits.incrementAndGet();
+            return copies(cached.users());
+        }
+
+        cacheMisses.incrementAndGet();
+        long generation = cacheGeneration.get();
+        List<User> users = List.copyOf(findAllByUsernames(roleMembershipIndex.getUsernames(roleCode)));
+
+        cachedUsersByRole.compute(roleCode, (code, current) ->
+                current != null && current.generation() > generation ? current : new CachedUsers(generation, users));
+        return copies(users);
+    }
+
+    private List<User> copies(List<User> users) {
+        return users.stream()
+                .map(metadataTools::copy)
+                .toList();
+    }
+
+    /**
+     * Loads the users with the given usernames with one query, ordered by username.
+     */
+    public List<User> findAllByUsernames(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return List.of();
+        }
+
+        return dataManager.unconstrained().load(User.class)
+                .query("select e from User e where e.username in :usernames order by e.username")
+                .parameter("usernames", usernames)
+                .list();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public void invalidateCache() {
+        cacheGeneration.incrementAndGet();
+        cachedUsersByRole.clear();
+        log.debug("Employee cache invalidated (hits: {}, misses: {})", cacheHits.get(), cacheMisses.get());
+    }
+
+    @TransactionalEventListener
+    public void onRoleAssignmentChanged(final EntityChangedEvent<RoleAssignmentEntity> event) {
+        invalidateCache();
+    }
+
+    @TransactionalEventListener
+    public void onUserChanged(final EntityChangedEvent<User> event) {
+        invalidateCache();
+    }
+
+    /**
+     * Users of a role together with the cache generation in which they were loaded.
+     */
+    private record CachedUsers(long generation, List<User> users) {
+    }
+}
@@ -3,18 +3,19 @@ package io.jmix.petclinic.entity.visit;
 import io.jmix.core.DataManager;
 import io.jmix.core.FetchPlan;
 import io.jmix.core.FetchPlanBuilder;
+import io.jmix.core.Id;
 import io.jmix.core.event.EntityChangedEvent;
 import io.jmix.petclinic.EmployeeRepository;
 import io.jmix.petclinic.entity.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Consumer;
 
@@ -27,59 +28,70 @@ public class AssignNurseToVisitAutomaticallyEventListener {
 
     private final DataManager dataManager;
     private final EmployeeRepository employeeRepository;
-
-    public AssignNurseToVisitAutomaticallyEventListener(DataManager dataManager, EmployeeRepository employeeRepository) {
+    private final NurseAvailabilityIndex nurseAvailabilityIndex;
+    private final NurseAssignmentQueue nurseAssignmentQueue;
+    private final TransactionTemplate requiresNewTransaction;
+
+    public AssignNurseToVisitAutomaticallyEventListener(
+            DataManager dataManager,
+            EmployeeRepository employeeRepository,
+            NurseAvailabilityIndex nurseAvailabilityIndex,
+            NurseAssignmentQueue nurseAssignmentQueue,
+            PlatformTransactionManager transactionManager) {
         this.dataManager = dataManager;
         this.employeeRepository = employeeRepository;
+        this.nurseAvailabilityIndex = nurseAvailabilityIndex;
+        this.nurseAssignmentQueue = nurseAssignmentQueue;
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
-    @TransactionalEventListener // <1>
-    @Transactional(propagation = Propagation.REQUIRES_NEW) // <2>
+    @TransactionalEventListener(condition = "!@petclinic_BatchNurseAssignment.handledInBatch(#event.entityId.value)") // <1>
     public void assignNurseToVisitAutomatically(final EntityChangedEvent<Visit> event) {
-        try {
-            if (event.getType().equals(EntityChangedEvent.Type.CREATED)) { // <3>
-
-                Visit visit = dataManager.load(event.getEntityId()) // <4>
-                        .fetchPlan(visitWithAssignedNurse())
-                        .one();
+        if (event.getType().equals(EntityChangedEvent.Type.CREATED)) { // <2>
+            Id<Visit> visitId = event.getEntityId();
+            nurseAssignmentQueue.submit("Visit: %s".formatted(visitId), () -> assignNurse(visitId)); // <3>
+        }
+    }
 
-                if (visit.getAssignedNurse() != null) {
-                    log.info("Nurse already assigned to visit: {}. No automatic assignment needed.", visit.getAssignedNurse());
-                    return;
-                }
+    private void assignNurse(Id<Visit> visitId) {
+        requiresNewTransaction.executeWithoutResult(status -> { // <4>
 
-                Optional<User> availableNurse = findAvailableNurse(visit);
+            Visit visit = dataManager.load(visitId) // <5>
+                    .fetchPlan(visitWithAssignedNurse())
+                    .one();
 
-                availableNurse.ifPresent(nurse -> {
-                    log.info("Available nurse found: {}. Assigning Nurse to Visit: {}", nurse, visit.getVisitNumber());
-                    visit.setAssignedNurse(nurse);
-                    dataManager.save(visit); // <5>
-                });
+            if (visit.getAssignedNurse() != null) {
+                log.info("Nurse already assigned to visit: {}. No automatic assignment needed.", visit.getAssignedNurse());
+                return;
             }
-        } catch (Exception e) {
-            log.error("Error automatically assigning nurse to Visit: %s".formatted(event.getEntityId()), e);
-        }
-    }
-    // end::entity-changed-event-listener-after-commit[]
-
-    private Optional<User> findAvailableNurse(Visit visit) {
 
-        List<Visit> overlappingVisits = dataManager.load(Visit.class)
-                .query("select e from petclinic_Visit e where e.visitStart < :visitEnd and e.visitEnd > :visitStart")
-                .parameter("visitEnd", visit.getVisitEnd())
-                .parameter("visitStart", visit.getVisitStart())
-                .fetchPlan(visitWithAssignedNurse())
-                .joinTransaction(false)
-                .list();
+            Optional<User> availableNurse = reserveAvailableNurse(visit);
 
-        List<User> busyNurses = overlappingVisits.stream()
-                .map(Visit::getAssignedNurse)
-                .filter(Objects::nonNull)
-                .toList();
+            availableNurse.ifPresent(nurse -> {
+                log.info("Available nurse found: {}. Assigning Nurse to Visit: {}", nurse, visit.getVisitNumber());
+                visit.setAssignedNurse(nurse);
+                dataManager.save(visit); // <6>
+            });
+        });
+    }
+    // end::entity-changed-event-listener-after-commit[]
 
-        return employeeRepository.findAllNurses().stream()
-                .filter(nurse -> !busyNurses.contains(nurse))
-                .findFirst();
+    /**
+     * The check and the booking of the nurse are atomic, so that concurrently created overlapping visits
+     * do not get the same nurse.
+     */
+    private Optional<User> reserveAvailableNurse(Visit visit) {
+        List<User> nurses = employeeRepository.findAllNurses();
+
+        return nurseAvailabilityIndex.reserve(
+                        visit.getId(),
+                        nurses.stream().map(User::getId).toList(),
+                        visit.getVisitStart(),
+                        visit.getVisitEnd())
+                .flatMap(nurseId -> nurses.stream()
+                        .filter(nurse -> nurse.getId().equals(nurseId))
+                        .findFirst());
     }
 
     private static Consumer<FetchPlanBuilder> visitWithAssignedNurse() {
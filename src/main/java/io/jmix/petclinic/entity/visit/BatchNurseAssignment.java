@@ -0,0 +1,189 @@
+package io.jmix.petclinic.entity.visit;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.FetchPlan;
+import io.jmix.core.SaveContext;
+import io.jmix.core.event.EntityChangedEvent;
+import io.jmix.petclinic.EmployeeRepository;
+import io.jmix.petclinic.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Assigns nurses to all visits that are created within one transaction in a single pass, instead of one
+ * {@link AssignNurseToVisitAutomaticallyEventListener} run per visit. Transactions that create only one visit
+ * are left to {@link AssignNurseToVisitAutomaticallyEventListener}.
+ * <p>
+ * The assignment runs asynchronously on the {@link NurseAssignmentQueue}.
+ * The visits are sorted by start and swept once: a visit without a nurse gets the least loaded nurse that is available
+ * according to the {@link NurseAvailabilityIndex} and has no overlapping visit within the batch. The nurses are
+ * reserved in the index, so that concurrently created visits do not get the same nurse.
+ * All assignments are saved in one transaction.
+ */
+@Component("petclinic_BatchNurseAssignment")
+public class BatchNurseAssignment {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchNurseAssignment.class);
+
+    private final DataManager dataManager;
+    private final EmployeeRepository employeeRepository;
+    private final NurseAvailabilityIndex nurseAvailabilityIndex;
+    private final NurseAssignmentQueue nurseAssignmentQueue;
+    private final TransactionTemplate requiresNewTransaction;
+
+    private final Set<UUID> handledVisitIds = ConcurrentHashMap.newKeySet();
+
+    public BatchNurseAssignment(
+            DataManager dataManager,
+            EmployeeRepository employeeRepository,
+            NurseAvailabilityIndex nurseAvailabilityIndex,
+            NurseAssignmentQueue nurseAssignmentQueue,
+            PlatformTransactionManager transactionManager) {
+        this.dataManager = dataManager;
+        this.employeeRepository = employeeRepository;
+        this.nurseAvailabilityIndex = nurseAvailabilityIndex;
+        this.nurseAssignmentQueue = nurseAssignmentQueue;
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Collects the created visits of the current transaction. Runs before the commit.
+     */
+    @EventListener
+    public void collectCreatedVisit(final EntityChangedEvent<Visit> event) {
+        if (event.getType() != EntityChangedEvent.Type.CREATED
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        CreatedVisits createdVisits = (CreatedVisits) TransactionSynchronizationManager.getResource(this);
+        if (createdVisits == null) {
+            createdVisits = new CreatedVisits();
+            TransactionSynchronizationManager.bindResource(this, createdVisits);
+            TransactionSynchronizationManager.registerSynchronization(createdVisits);
+        }
+        createdVisits.visitIds.add((UUID) event.getEntityId().getValue());
+    }
+
+    /**
+     * Returns true (once) if the nurse assignment of the visit was already handled as part of a batch.
+     */
+    public boolean handledInBatch(Object visitId) {
+        return handledVisitIds.remove((UUID) visitId);
+    }
+
+    private void assignNurses(List<UUID> visitIds) {
+        List<Visit> visits = dataManager.load(Visit.class)
+                .ids(visitIds)
+                .fetchPlan(v -> {
+                    v.addFetchPlan(FetchPlan.BASE);
+                    v.add("assignedNurse", FetchPlan.BASE);
+                })
+                .list()
+                .stream()
+                .filter(visit -> visit.getVisitStart() != null && visit.getVisitEnd() != null)
+                .sorted(Comparator.comparing(Visit::getVisitStart))
+                .toList();
+
+        BatchBookings bookings = new BatchBookings();
+        visits.stream()
+                .filter(visit -> visit.getAssignedNurse() != null)
+                .forEach(bookings::book);
+
+        List<User> nurses = employeeRepository.findAllNurses();
+        SaveContext saveContext = new SaveContext();
+
+        Map<UUID, User> nursesById = nurses.stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        visits.stream()
+                .filter(visit -> visit.getAssignedNurse() == null)
+                .forEach(visit -> nurseAvailabilityIndex.reserve(
+                                visit.getId(),
+                                nurses.stream()
+                                        .filter(nurse -> bookings.isAvailable(nurse, visit))
+                                        .map(User::getId)
+                                        .toList(),
+                                visit.getVisitStart(),
+                                visit.getVisitEnd())
+                        .map(nursesById::get)
+                        .ifPresent(nurse -> {
+                            visit.setAssignedNurse(nurse);
+                            bookings.book(visit);
+                            saveContext.saving(visit);
+                        }));
+
+        dataManager.save(saveContext);
+
+        log.info("Nurses assigned to {} of {} created Visits", saveContext.getEntitiesToSave().size(), visits.size());
+    }
+
+    /**
+     * Visits of the batch per nurse. Visits of the batch are not contained in the {@link NurseAvailabilityIndex}
+     * until their transaction is processed.
+     */
+    private static class BatchBookings {
+
+        private final Map<User, List<Visit>> visitsPerNurse = new HashMap<>();
+
+        void book(Visit visit) {
+            visitsPerNurse.computeIfAbsent(visit.getAssignedNurse(), nurse -> new ArrayList<>())
+                    .add(visit);
+        }
+
+        boolean isAvailable(User nurse, Visit visit) {
+            return visitsPerNurse.getOrDefault(nurse, List.of()).stream()
+                    .noneMatch(bookedVisit -> bookedVisit.getVisitStart().isBefore(visit.getVisitEnd())
+                            && bookedVisit.getVisitEnd().isAfter(visit.getVisitStart()));
+        }
+    }
+
+    /**
+     * The visits created within one transaction. Runs before the listeners of the individual visits after commit.
+     */
+    private class CreatedVisits implements TransactionSynchronization {
+
+        private final List<UUID> visitIds = new ArrayList<>();
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void afterCommit() {
+            if (visitIds.size() < 2) {
+                return;
+            }
+
+            handledVisitIds.addAll(visitIds);
+            nurseAssignmentQueue.submit("%d created Visits".formatted(visitIds.size()),
+                    () -> requiresNewTransaction.executeWithoutResult(status -> assignNurses(visitIds)));
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(BatchNurseAssignment.this);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package io.jmix.petclinic.entity.visit;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.OptimisticLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs nurse assignments asynchronously on virtual threads, so that saving a visit does not wait for the assignment.
+ * <p>
+ * The amount of pending assignments is bounded. If the queue is full, the assignment runs on the submitting thread.
+ * Assignments that fail with an optimistic lock exception are retried with exponential backoff.
+ * The security context of the submitting thread is used for the assignment.
+ */
+@Component("petclinic_NurseAssignmentQueue")
+public class NurseAssignmentQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(NurseAssignmentQueue.class);
+
+    static final int CAPACITY = 1000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Duration INITIAL_BACKOFF = Duration.ofMillis(50);
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("nurse-assignment-", 0).factory());
+    private final Semaphore capacity = new Semaphore(CAPACITY);
+    private final Set<PendingAssignment> pendingAssignments = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Queues the assignment. The description is used for logging.
+     */
+    public void submit(String description, Runnable assignment) {
+        PendingAssignment pendingAssignment = new PendingAssignment(
+                description, new DelegatingSecurityContextRunnable(assignment), System.nanoTime());
+
+        if (!capacity.tryAcquire()) {
+            log.warn("Nurse assignment queue is full. Assigning nurse for {} synchronously.", description);
+            runWithRetry(pendingAssignment);
+            return;
+        }
+
+        pendingAssignments.add(pendingAssignment);
+        executor.execute(() -> {
+            try {
+                runWithRetry(pendingAssignment);
+            } finally {
+                pendingAssignments.remove(pendingAssignment);
+                capacity.release();
+            }
+        });
+    }
+
+    /**
+     * @return amount of assignments that are queued or running
+     */
+    public int getQueueDepth() {
+        return pendingAssignments.size();
+    }
+
+    /**
+     * @return time since the oldest pending assignment was queued, or zero if no assignment is pending
+     */
+    public Duration getLag() {
+        OptionalLong oldestQueuedAt = pendingAssignments.stream()
+                .mapToLong(PendingAssignment::queuedAt)
+                .min();
+        return oldestQueuedAt.isPresent()
+                ? Duration.ofNanos(System.nanoTime() - oldestQueuedAt.getAsLong())
+                : Duration.ZERO;
+    }
+
+    /**
+     * Waits until all pending assignments are finished.
+     *
+     * @return true if the queue is empty, false if the timeout elapsed before
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!pendingAssignments.isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return true;
+    }
+
+    private void runWithRetry(PendingAssignment pendingAssignment) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                pendingAssignment.assignment().run();
+                return;
+            } catch (RuntimeException e) {
+                if (!isOptimisticLockFailure(e) || attempt == MAX_ATTEMPTS) {
+                    log.error("Error automatically assigning nurse to {}", pendingAssignment.description(), e);
+                    return;
+                }
+
+                Duration backoff = INITIAL_BACKOFF.multipliedBy(1L << (attempt - 1));
+                log.debug("Optimistic lock failure assigning nurse to {}. Retrying in {}",
+                        pendingAssignment.description(), backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    static boolean isOptimisticLockFailure(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof OptimisticLockingFailureException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("{} nurse assignments not finished on shutdown", getQueueDepth());
+            executor.shutdownNow();
+        }
+    }
+
+    private record PendingAssignment(String description, Runnable assignment, long queuedAt) {
+    }
+}
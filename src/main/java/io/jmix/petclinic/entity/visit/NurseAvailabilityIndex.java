@@ -0,0 +1,418 @@
+package io.jmix.petclinic.entity.visit;
+
+import com.google.common.util.concurrent.Striped;
+import io.jmix.core.DataManager;
+import io.jmix.core.TimeSource;
+import io.jmix.core.entity.KeyValueEntity;
+import io.jmix.core.event.EntityChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.LongStream;
+
+/**
+ * In-memory index of the visits that are assigned to a nurse, used to check the availability of a nurse
+ * without querying the database.
+ * <p>
+ * Only visits that end after the start of the current day are indexed. The index is loaded lazily on first use and
+ * kept current from {@link EntityChangedEvent}s of {@link Visit} and {@link VisitsBulkInsertedEvent}s. Visits that
+ * have ended are evicted when the day changes. Ranges that start before the current day are additionally checked
+ * against the database.
+ * <p>
+ * Per nurse and day, the booked minutes are counted along with the bookings, so that the least loaded nurse
+ * is found without aggregate queries.
+ * <p>
+ * {@link #reserve(UUID, List, LocalDateTime, LocalDateTime)} checks and books a nurse atomically. Reservations
+ * are serialized per hour of the day via striped locks, so that only reservations of overlapping visits wait
+ * for each other.
+ */
+@Component("petclinic_NurseAvailabilityIndex")
+public class NurseAvailabilityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(NurseAvailabilityIndex.class);
+
+    private static final int BUCKET_LOCK_STRIPES = 64;
+
+    private final DataManager dataManager;
+    private final TimeSource timeSource;
+
+    /**
+     * Write lock for (re)loading the whole index, read lock for all other access.
+     */
+    private final ReadWriteLock loadLock = new ReentrantReadWriteLock();
+    private final Striped<Lock> bucketLocks = Striped.lock(BUCKET_LOCK_STRIPES);
+    private final Map<UUID, NurseSchedule> schedulesByNurse = new ConcurrentHashMap<>();
+    private final Map<UUID, Booking> bookingsByVisit = new ConcurrentHashMap<>();
+    private final Map<NurseDay, Long> bookedMinutesByNurseDay = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    /**
+     * Start of the day from which on the visits are indexed.
+     */
+    private volatile LocalDateTime indexedFrom;
+
+    public NurseAvailabilityIndex(DataManager dataManager, TimeSource timeSource) {
+        this.dataManager = dataManager;
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * @return true if the nurse has no assigned visit that overlaps the given range. Visits that end exactly
+     * when the range starts (or start exactly when it ends) do not overlap.
+     */
+    public boolean isAvailable(UUID nurseId, LocalDateTime visitStart, LocalDateTime visitEnd) {
+        ensureLoaded();
+        Set<UUID> bookedNurses = nursesBookedBeforeIndex(visitStart, visitEnd);
+
+        loadLock.readLock().lock();
+        try {
+            return !bookedNurses.contains(nurseId) && isAvailableInIndex(nurseId, visitStart, visitEnd);
+        } finally {
+            loadLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Books the nurse with the fewest booked minutes on the day of the range among the given nurses that are
+     * available for the range. On a tie, the nurse that comes first in the list is booked. The check and
+     * the booking are atomic with respect to other reservations of overlapping ranges. If called within
+     * a transaction, the reservation is cancelled when the transaction is rolled back. Otherwise, it has to be
+     * cancelled with {@link #cancel(UUID)} if the assignment is not saved. For ranges before the current day,
+     * the booked minutes of the nurses are not known, so the first available nurse is booked.
+     *
+     * @return the reserved nurse or an empty optional if none of the nurses is available
+     */
+    public Optional<UUID> reserve(UUID visitId, List<UUID> nurseIds, LocalDateTime visitStart, LocalDateTime visitEnd) {
+        ensureLoaded();
+        Set<UUID> bookedNurses = nursesBookedBeforeIndex(visitStart, visitEnd);
+
+        loadLock.readLock().lock();
+        try {
+            Iterable<Lock> locks = bucketLocks.bulkGet(hourBuckets(visitStart, visitEnd));
+            locks.forEach(Lock::lock);
+            try {
+                LocalDate day = visitStart.toLocalDate();
+                Optional<UUID> availableNurse = nurseIds.stream()
+                        .filter(nurseId -> !bookedNurses.contains(nurseId))
+                        .filter(nurseId -> isAvailableInIndex(nurseId, visitStart, visitEnd))
+                        .min(Comparator.comparingLong(nurseId -> bookedMinutes(nurseId, day)));
+                availableNurse.ifPresent(nurseId -> {
+                    book(visitId, new Booking(nurseId, visitStart, visitEnd));
+                    cancelOnRollback(visitId);
+                });
+                return availableNurse;
+            } finally {
+                locks.forEach(Lock::unlock);
+            }
+        } finally {
+            loadLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return sum of the durations of the visits assigned to the nurse that start on the given day,
+     * or zero for days before the current day
+     */
+    public long getBookedMinutes(UUID nurseId, LocalDate day) {
+        ensureLoaded();
+        return bookedMinutes(nurseId, day);
+    }
+
+    private long bookedMinutes(UUID nurseId, LocalDate day) {
+        return bookedMinutesByNurseDay.getOrDefault(new NurseDay(nurseId, day), 0L);
+    }
+
+    private void cancelOnRollback(UUID visitId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        cancel(visitId);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the reservation of a visit whose assignment was not saved.
+     */
+    public void cancel(UUID visitId) {
+        loadLock.readLock().lock();
+        try {
+            release(visitId);
+        } finally {
+            loadLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Discards the index, so that it is loaded from the database again on next use.
+     */
+    public void invalidate() {
+        loadLock.writeLock().lock();
+        try {
+            schedulesByNurse.clear();
+            bookingsByVisit.clear();
+            bookedMinutesByNurseDay.clear();
+            loaded = false;
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onVisitChanged(final EntityChangedEvent<Visit> event) {
+        UUID visitId = (UUID) event.getEntityId().getValue();
+
+        if (event.getType() == EntityChangedEvent.Type.DELETED) {
+            updateIfLoaded(() -> release(visitId));
+        } else if (event.getType() == EntityChangedEvent.Type.CREATED || isBookingChanged(event)) {
+            Optional<KeyValueEntity> booking = dataManager.loadValues(
+                            "select e.assignedNurse.id, e.visitStart, e.visitEnd from petclinic_Visit e " +
+                                    "where e.id = :visitId and e.assignedNurse is not null")
+                    .properties("nurseId", "visitStart", "visitEnd")
+                    .parameter("visitId", visitId)
+                    .optional();
+
+            updateIfLoaded(() -> {
+                // a created visit can only be booked by a reservation, which must not be released here
+                if (event.getType() == EntityChangedEvent.Type.UPDATED) {
+                    release(visitId);
+                }
+                booking.ifPresent(it -> book(visitId, it));
+            });
+        }
+    }
+
+    /**
+     * The inserted visits of a bulk batch are booked directly. If the inserted visits are not known, the index is
+     * loaded again.
+     */
+    @EventListener
+    public void onVisitsBulkInserted(final VisitsBulkInsertedEvent event) {
+        if (event.visits() == null) {
+            invalidate();
+            return;
+        }
+
+        updateIfLoaded(() -> event.visits().forEach(visit -> {
+            if (visit.nurseId() != null && visit.visitStart() != null && visit.visitEnd() != null) {
+                bookIfIndexed(visit.visitId(), new Booking(visit.nurseId(), visit.visitStart(), visit.visitEnd()));
+            }
+        }));
+    }
+
+    private static boolean isBookingChanged(EntityChangedEvent<Visit> event) {
+        return event.getChanges().isChanged("assignedNurse")
+                || event.getChanges().isChanged("visitStart")
+                || event.getChanges().isChanged("visitEnd");
+    }
+
+    private boolean isAvailableInIndex(UUID nurseId, LocalDateTime visitStart, LocalDateTime visitEnd) {
+        NurseSchedule schedule = schedulesByNurse.get(nurseId);
+        return schedule == null || !schedule.overlaps(visitStart, visitEnd);
+    }
+
+    /**
+     * Two overlapping ranges always share at least one hour bucket.
+     */
+    private static List<Long> hourBuckets(LocalDateTime visitStart, LocalDateTime visitEnd) {
+        long firstHour = visitStart.toEpochSecond(ZoneOffset.UTC) / 3600;
+        long lastHour = Math.max(firstHour, (visitEnd.toEpochSecond(ZoneOffset.UTC) - 1) / 3600);
+        return LongStream.rangeClosed(firstHour, lastHour)
+                .boxed()
+                .toList();
+    }
+
+    /**
+     * Loads the index on first use and evicts the visits that have ended when the day has changed.
+     */
+    private void ensureLoaded() {
+        LocalDateTime startOfToday = timeSource.now().toLocalDate().atStartOfDay();
+        if (loaded && !startOfToday.isAfter(indexedFrom)) {
+            return;
+        }
+
+        // loaded within the write lock, so that no event of a concurrent transaction gets lost in between
+        loadLock.writeLock().lock();
+        try {
+            if (!loaded) {
+                indexedFrom = startOfToday;
+                dataManager.loadValues(
+                                "select e.id, e.assignedNurse.id, e.visitStart, e.visitEnd from petclinic_Visit e " +
+                                        "where e.assignedNurse is not null and e.visitEnd > :indexedFrom")
+                        .properties("visitId", "nurseId", "visitStart", "visitEnd")
+                        .parameter("indexedFrom", startOfToday)
+                        .list()
+                        .forEach(it -> book(it.getValue("visitId"), it));
+                loaded = true;
+                log.debug("Nurse availability index loaded with {} visits", bookingsByVisit.size());
+            } else if (startOfToday.isAfter(indexedFrom)) {
+                indexedFrom = startOfToday;
+                bookingsByVisit.forEach((visitId, booking) -> {
+                    if (!booking.visitEnd().isAfter(startOfToday)) {
+                        release(visitId);
+                    }
+                });
+                log.debug("Nurse availability index reduced to {} visits", bookingsByVisit.size());
+            }
+        } finally {
+            loadLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Visits that end before the indexed visits can overlap ranges that start before the current day,
+     * so these ranges are checked against the database.
+     *
+     * @return nurses with a visit overlapping the range, or an empty set if the range is covered by the index
+     */
+    private Set<UUID> nursesBookedBeforeIndex(LocalDateTime visitStart, LocalDateTime visitEnd) {
+        if (!visitStart.isBefore(indexedFrom)) {
+            return Set.of();
+        }
+        return Set.copyOf(dataManager.loadValue(
+                        "select distinct e.assignedNurse.id from petclinic_Visit e " +
+                                "where e.assignedNurse is not null " +
+                                "and e.visitStart < :visitEnd and e.visitEnd > :visitStart", UUID.class)
+                .parameter("visitStart", visitStart)
+                .parameter("visitEnd", visitEnd)
+                .list());
+    }
+
+    /**
+     * Changes before the index is loaded are skipped, because they are contained in the loaded data.
+     */
+    private void updateIfLoaded(Runnable update) {
+        loadLock.readLock().lock();
+        try {
+            if (loaded) {
+                update.run();
+            }
+        } finally {
+            loadLock.readLock().unlock();
+        }
+    }
+
+    private void book(UUID visitId, KeyValueEntity values) {
+        UUID nurseId = values.getValue("nurseId");
+        LocalDateTime visitStart = values.getValue("visitStart");
+        LocalDateTime visitEnd = values.getValue("visitEnd");
+        if (nurseId != null && visitStart != null && visitEnd != null) {
+            bookIfIndexed(visitId, new Booking(nurseId, visitStart, visitEnd));
+        }
+    }
+
+    /**
+     * Visits that have ended before the current day are not indexed, e.g. when past visits are generated.
+     */
+    private void bookIfIndexed(UUID visitId, Booking booking) {
+        if (booking.visitEnd().isAfter(indexedFrom)) {
+            book(visitId, booking);
+        }
+    }
+
+    private void book(UUID visitId, Booking booking) {
+        Booking previousBooking = bookingsByVisit.put(visitId, booking);
+        if (previousBooking != null) {
+            unbook(visitId, previousBooking);
+        }
+        schedulesByNurse.computeIfAbsent(booking.nurseId(), nurseId -> new NurseSchedule()).add(visitId, booking);
+        addBookedMinutes(booking, booking.minutes());
+    }
+
+    private void release(UUID visitId) {
+        Booking booking = bookingsByVisit.remove(visitId);
+        if (booking != null) {
+            unbook(visitId, booking);
+        }
+    }
+
+    private void unbook(UUID visitId, Booking booking) {
+        schedulesByNurse.get(booking.nurseId()).remove(visitId, booking);
+        addBookedMinutes(booking, -booking.minutes());
+    }
+
+    private void addBookedMinutes(Booking booking, long minutes) {
+        bookedMinutesByNurseDay.compute(new NurseDay(booking.nurseId(), booking.visitStart().toLocalDate()),
+                (nurseDay, bookedMinutes) -> {
+                    long sum = (bookedMinutes != null ? bookedMinutes : 0) + minutes;
+                    return sum != 0 ? sum : null;
+                });
+    }
+
+    private record Booking(UUID nurseId, LocalDateTime visitStart, LocalDateTime visitEnd) {
+
+        long minutes() {
+            return Duration.between(visitStart, visitEnd).toMinutes();
+        }
+    }
+
+    private record NurseDay(UUID nurseId, LocalDate day) {
+    }
+
+    private record BookingKey(LocalDateTime visitStart, UUID visitId) {
+
+        static final Comparator<BookingKey> ORDER = Comparator.comparing(BookingKey::visitStart)
+                .thenComparing(BookingKey::visitId);
+    }
+
+    /**
+     * The bookings of one nurse, sorted by start. Together with the longest booking, the bookings that can overlap
+     * a range are found with one range lookup: they start before the range ends and not earlier than the longest
+     * booking before the range starts.
+     */
+    private static class NurseSchedule {
+
+        private static final UUID MIN_UUID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+        private final ConcurrentNavigableMap<BookingKey, Booking> bookingsByStart =
+                new ConcurrentSkipListMap<>(BookingKey.ORDER);
+        private final AtomicReference<Duration> longestBooking = new AtomicReference<>(Duration.ZERO);
+
+        void add(UUID visitId, Booking booking) {
+            bookingsByStart.put(new BookingKey(booking.visitStart(), visitId), booking);
+            Duration duration = Duration.between(booking.visitStart(), booking.visitEnd());
+            longestBooking.accumulateAndGet(duration, (longest, current) -> current.compareTo(longest) > 0 ? current : longest);
+        }
+
+        void remove(UUID visitId, Booking booking) {
+            bookingsByStart.remove(new BookingKey(booking.visitStart(), visitId), booking);
+        }
+
+        boolean overlaps(LocalDateTime visitStart, LocalDateTime visitEnd) {
+            BookingKey from = new BookingKey(visitStart.minus(longestBooking.get()), MIN_UUID);
+            BookingKey to = new BookingKey(visitEnd, MIN_UUID);
+            return bookingsByStart.subMap(from, true, to, false)
+                    .values()
+                    .stream()
+                    .anyMatch(booking -> booking.visitEnd().isAfter(visitStart));
+        }
+    }
+}
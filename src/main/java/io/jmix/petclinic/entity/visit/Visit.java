@@ -31,7 +31,9 @@ import static io.jmix.petclinic.entity.visit.VisitTreatmentStatus.IN_PROGRESS;
 @JmixEntity
 @Table(name = "PETCLINIC_VISIT", indexes = {
         @Index(name = "IDX_PETCLINIC_VISIT_ASSIGNED_NURSE", columnList = "ASSIGNED_NURSE_ID"),
+        @Index(name = "IDX_PETCLINIC_VISIT_NURSE_WORKLOAD", columnList = "ASSIGNED_NURSE_ID, DELETED_DATE, TREATMENT_STATUS"),
         @Index(name = "IDX_PETCLINIC_VISIT_PET", columnList = "PET_ID"),
+        @Index(name = "IDX_PETCLINIC_VISIT_TIME_RANGE", columnList = "VISIT_START, VISIT_END, TYPE_, DELETED_DATE"),
         @Index(name = "IDX_PETCLINIC_VISIT_VISIT_NUMBER", columnList = "VISIT_NUMBER, DELETED_DATE", unique = true)
 })
 @Entity(name = "petclinic_Visit")
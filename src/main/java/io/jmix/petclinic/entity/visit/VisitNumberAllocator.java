@@ -0,0 +1,81 @@
+package io.jmix.petclinic.entity.visit;
+
+import io.jmix.data.Sequence;
+import io.jmix.data.Sequences;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out visit sequence numbers from blocks that are reserved in the database, so that only every
+ * {@code petclinic.visit.number-block-size}-th number costs a database round-trip.
+ * <p>
+ * The blocks are reserved from the sequence {@code visit_number_block}, which increments by {@link #BLOCK_STRIDE}.
+ * Each value of it is the start of a block that belongs to exactly one application instance, so the numbers are
+ * unique across instances. The block size can be configured per instance up to {@link #BLOCK_STRIDE}. Numbers
+ * of a block that are not used (smaller block size, restart of the instance) are left as gaps.
+ */
+@Component("petclinic_VisitNumberAllocator")
+public class VisitNumberAllocator {
+
+    /**
+     * Increment of the block sequence and maximum block size. Must be the same for all instances.
+     */
+    public static final int BLOCK_STRIDE = 100;
+
+    private static final String LEGACY_SEQUENCE_NAME = "visit_number";
+    private static final String BLOCK_SEQUENCE_NAME = "visit_number_block";
+
+    private final Sequences sequences;
+    private final int blockSize;
+
+    private long nextValue;
+    private long blockEnd = -1;
+    private Sequence blockSequence;
+
+    public VisitNumberAllocator(Sequences sequences, @Value("${petclinic.visit.number-block-size:100}") int blockSize) {
+        if (blockSize < 1 || blockSize > BLOCK_STRIDE) {
+            throw new IllegalArgumentException("petclinic.visit.number-block-size must be between 1 and " + BLOCK_STRIDE);
+        }
+        this.sequences = sequences;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @return the next visit sequence number
+     */
+    public synchronized long nextValue() {
+        if (nextValue > blockEnd) {
+            long blockStart = sequences.createNextValue(blockSequence());
+            nextValue = blockStart;
+            blockEnd = blockStart + blockSize - 1;
+        }
+        return nextValue++;
+    }
+
+    /**
+     * Makes sure that all numbers handed out from now on are greater than the given value. Used after visit numbers
+     * were written without this allocator, e.g. when visits are restored from a snapshot.
+     */
+    public synchronized void advancePast(long value) {
+        if (sequences.getCurrentValue(blockSequence()) < value) {
+            sequences.setCurrentValue(blockSequence(), value);
+        }
+        if (nextValue <= value) {
+            blockEnd = -1;
+            nextValue = 0;
+        }
+    }
+
+    /**
+     * The block sequence continues after the numbers of the sequence that was used before blocks were introduced.
+     */
+    private Sequence blockSequence() {
+        if (blockSequence == null) {
+            long legacyValue = sequences.getCurrentValue(Sequence.withName(LEGACY_SEQUENCE_NAME));
+            blockSequence = Sequence.withName(BLOCK_SEQUENCE_NAME)
+                    .setStartValue(legacyValue + 1)
+                    .setIncrement(BLOCK_STRIDE);
+        }
+        return blockSequence;
+    }
+}
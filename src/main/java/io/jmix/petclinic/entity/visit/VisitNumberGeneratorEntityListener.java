@@ -1,8 +1,6 @@
 package io.jmix.petclinic.entity.visit;
 
 // tag::entity-saving-event-listener[]
-import io.jmix.data.Sequence;
-import io.jmix.data.Sequences;
 import io.jmix.core.event.EntitySavingEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
@@ -10,10 +8,10 @@ import org.springframework.stereotype.Component;
 @Component("petclinic_VisitNumberGeneratorEntityListener")
 public class VisitNumberGeneratorEntityListener {
 
-    private final Sequences sequences;
+    private final VisitNumberAllocator visitNumberAllocator;
 
-    public VisitNumberGeneratorEntityListener(Sequences sequences) {
-        this.sequences = sequences;
+    public VisitNumberGeneratorEntityListener(VisitNumberAllocator visitNumberAllocator) {
+        this.visitNumberAllocator = visitNumberAllocator;
     }
 
     @EventListener
@@ -23,7 +21,7 @@ public class VisitNumberGeneratorEntityListener {
             return;
         }
 
-        long sequenceNumber = sequences.createNextValue(Sequence.withName("visit_number")); // <3>
+        long sequenceNumber = visitNumberAllocator.nextValue(); // <3>
         int visitYear = event.getEntity().getVisitStart().getYear();
 
         String visitNumber = "V-%s-%06d".formatted(visitYear, sequenceNumber); // <4>
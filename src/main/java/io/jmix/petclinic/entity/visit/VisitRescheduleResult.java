@@ -0,0 +1,27 @@
+package io.jmix.petclinic.entity.visit;
+
+import org.springframework.lang.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Outcome of a {@link VisitRescheduler#reschedule reschedule}. On success, it contains the written times and the new
+ * version. On a conflict, it contains the current state of the visit, or no times and version if the visit
+ * was deleted.
+ */
+public record VisitRescheduleResult(UUID visitId, boolean conflict, @Nullable LocalDateTime visitStart,
+                                    @Nullable LocalDateTime visitEnd, @Nullable Integer version) {
+
+    static VisitRescheduleResult rescheduled(Visit visit) {
+        return new VisitRescheduleResult(visit.getId(), false, visit.getVisitStart(), visit.getVisitEnd(),
+                visit.getVersion());
+    }
+
+    static VisitRescheduleResult conflict(UUID visitId, @Nullable Visit currentVisit) {
+        return currentVisit == null
+                ? new VisitRescheduleResult(visitId, true, null, null, null)
+                : new VisitRescheduleResult(visitId, true, currentVisit.getVisitStart(), currentVisit.getVisitEnd(),
+                currentVisit.getVersion());
+    }
+}
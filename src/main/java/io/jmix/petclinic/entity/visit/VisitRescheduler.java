@@ -0,0 +1,163 @@
+package io.jmix.petclinic.entity.visit;
+
+import io.jmix.core.DataManager;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Persists the new time of a visit that was moved or resized in the calendar.
+ * <p>
+ * Only {@code visitStart} and {@code visitEnd} are loaded and written, and only if the visit still has the version
+ * that the user has seen. Otherwise, a conflict is reported. The writes run asynchronously. Reschedules of a visit
+ * that arrive while a write for it is running are coalesced: only the latest of them is written afterwards.
+ */
+@Component("petclinic_VisitRescheduler")
+public class VisitRescheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(VisitRescheduler.class);
+
+    private final DataManager dataManager;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("visit-reschedule-", 0).factory());
+    private final Map<UUID, PendingReschedule> pendingReschedules = new ConcurrentHashMap<>();
+
+    public VisitRescheduler(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * Queues the new time of the visit. The result handler is called on a background thread after the time is
+     * written or a conflict is detected. It is not called for reschedules that are superseded by a later one.
+     *
+     * @param expectedVersion version of the visit the new time is based on
+     */
+    public void reschedule(UUID visitId, @Nullable Integer expectedVersion,
+                           LocalDateTime visitStart, LocalDateTime visitEnd,
+                           Consumer<VisitRescheduleResult> resultHandler) {
+        Reschedule reschedule = new Reschedule(expectedVersion, visitStart, visitEnd, resultHandler);
+
+        boolean[] writeRunning = {true};
+        pendingReschedules.compute(visitId, (id, pending) -> {
+            if (pending == null) {
+                writeRunning[0] = false;
+                return new PendingReschedule();
+            }
+            pending.latest = reschedule;
+            return pending;
+        });
+
+        if (!writeRunning[0]) {
+            executor.execute(new DelegatingSecurityContextRunnable(() -> writeAll(visitId, reschedule)));
+        }
+    }
+
+    private void writeAll(UUID visitId, Reschedule first) {
+        Reschedule reschedule = first;
+        Integer version = first.expectedVersion();
+        try {
+            while (reschedule != null) {
+                VisitRescheduleResult result = write(visitId, version, reschedule);
+                handleResult(reschedule, result);
+
+                if (result.conflict()) {
+                    // the coalesced reschedules are based on the same outdated version
+                    for (Reschedule next = takeLatest(visitId); next != null; next = takeLatest(visitId)) {
+                        handleResult(next, result);
+                    }
+                    return;
+                }
+
+                // later reschedules are based on this write, even if the user has not seen its version yet
+                version = result.version();
+                reschedule = takeLatest(visitId);
+            }
+        } catch (RuntimeException e) {
+            pendingReschedules.remove(visitId);
+            log.error("Error rescheduling visit {}", visitId, e);
+        }
+    }
+
+    /**
+     * @return the latest reschedule that arrived during the write, or null if none arrived. In this case,
+     * the visit is released, so that the next reschedule starts a new write.
+     */
+    @Nullable
+    private Reschedule takeLatest(UUID visitId) {
+        Reschedule[] latest = {null};
+        pendingReschedules.computeIfPresent(visitId, (id, pending) -> {
+            if (pending.latest == null) {
+                return null;
+            }
+            latest[0] = pending.latest;
+            pending.latest = null;
+            return pending;
+        });
+        return latest[0];
+    }
+
+    private VisitRescheduleResult write(UUID visitId, @Nullable Integer expectedVersion, Reschedule reschedule) {
+        try {
+            Optional<Visit> visit = loadTimes(visitId);
+            if (visit.isEmpty() || !Objects.equals(visit.get().getVersion(), expectedVersion)) {
+                return VisitRescheduleResult.conflict(visitId, visit.orElse(null));
+            }
+
+            visit.get().setVisitStart(reschedule.visitStart());
+            visit.get().setVisitEnd(reschedule.visitEnd());
+            return VisitRescheduleResult.rescheduled(dataManager.save(visit.get()));
+        } catch (RuntimeException e) {
+            if (!NurseAssignmentQueue.isOptimisticLockFailure(e)) {
+                throw e;
+            }
+            // changed between loading and saving
+            return VisitRescheduleResult.conflict(visitId, loadTimes(visitId).orElse(null));
+        }
+    }
+
+    private Optional<Visit> loadTimes(UUID visitId) {
+        return dataManager.load(Visit.class)
+                .id(visitId)
+                .fetchPlan(fetchPlan -> fetchPlan.addAll("version", "visitStart", "visitEnd"))
+                .optional();
+    }
+
+    private static void handleResult(Reschedule reschedule, VisitRescheduleResult result) {
+        try {
+            reschedule.resultHandler().accept(result);
+        } catch (RuntimeException e) {
+            log.warn("Error handling reschedule result of visit {}", result.visitId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private record Reschedule(@Nullable Integer expectedVersion, LocalDateTime visitStart, LocalDateTime visitEnd,
+                              Consumer<VisitRescheduleResult> resultHandler) {
+    }
+
+    /**
+     * Marks a visit with a running write. Only accessed within the atomic map operations.
+     */
+    private static class PendingReschedule {
+        @Nullable
+        Reschedule latest;
+    }
+}
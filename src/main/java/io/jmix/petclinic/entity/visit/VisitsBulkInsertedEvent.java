@@ -0,0 +1,35 @@
+package io.jmix.petclinic.entity.visit;
+
+import io.jmix.core.event.EntityChangedEvent;
+import org.springframework.lang.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Published after visits were inserted without {@link EntityChangedEvent}s, e.g. by JDBC bulk inserts.
+ * Components that keep visits in memory have to update them from this event instead.
+ *
+ * @param visits the inserted visits, or null if they are not known, e.g. after a snapshot restore
+ */
+public record VisitsBulkInsertedEvent(@Nullable List<InsertedVisit> visits) {
+
+    public static VisitsBulkInsertedEvent of(List<Visit> visits) {
+        return new VisitsBulkInsertedEvent(visits.stream()
+                .map(visit -> new InsertedVisit(
+                        visit.getId(),
+                        visit.getAssignedNurse() != null ? visit.getAssignedNurse().getId() : null,
+                        visit.getVisitStart(),
+                        visit.getVisitEnd()))
+                .toList());
+    }
+
+    public static VisitsBulkInsertedEvent unknownVisits() {
+        return new VisitsBulkInsertedEvent(null);
+    }
+
+    public record InsertedVisit(UUID visitId, @Nullable UUID nurseId,
+                                @Nullable LocalDateTime visitStart, @Nullable LocalDateTime visitEnd) {
+    }
+}
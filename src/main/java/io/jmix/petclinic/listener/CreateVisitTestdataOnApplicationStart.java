@@ -1,23 +1,73 @@
 package io.jmix.petclinic.listener;
 
-import io.jmix.core.security.Authenticated;
+import io.jmix.core.security.SystemAuthenticator;
+import io.jmix.petclinic.visit.PopulationTestDataCreation;
+import io.jmix.petclinic.visit.VisitTestDataAvailability;
 import io.jmix.petclinic.visit.VisitTestDataCreation;
+import io.jmix.petclinic.visit.VisitTestDataStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the visit test data in the background, so that the application serves requests while the data is generated.
+ * Until the generation is finished, {@link VisitTestDataAvailability#REFUSING_TRAFFIC} is published.
+ */
 @Component("petclinic_CreateVisitTestdataOnApplicationStart")
 @Profile("!online")
 public class CreateVisitTestdataOnApplicationStart {
 
+    private static final Logger log = LoggerFactory.getLogger(CreateVisitTestdataOnApplicationStart.class);
+
+    @Autowired
+    protected PopulationTestDataCreation populationTestDataCreation;
     @Autowired
     protected VisitTestDataCreation visitTestDataCreation;
+    @Autowired
+    protected VisitTestDataStatus visitTestDataStatus;
+    @Autowired
+    protected SystemAuthenticator systemAuthenticator;
+    @Autowired
+    protected ApplicationEventPublisher applicationEventPublisher;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "visit-test-data-creation");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    @Authenticated
     @EventListener
     public void onApplicationStarted(ApplicationStartedEvent event) {
-        visitTestDataCreation.createData();
+        AvailabilityChangeEvent.publish(applicationEventPublisher, this, VisitTestDataAvailability.REFUSING_TRAFFIC);
+
+        executor.execute(() -> {
+            try {
+                systemAuthenticator.runWithSystem(() -> {
+                    populationTestDataCreation.createData();
+                    visitTestDataCreation.createData();
+                });
+            } catch (Exception e) {
+                log.error("Error creating visit test data", e);
+                // e.g. the population failed before the visit generation has started
+                visitTestDataStatus.failed();
+            } finally {
+                AvailabilityChangeEvent.publish(applicationEventPublisher, this, VisitTestDataAvailability.ACCEPTING_TRAFFIC);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package io.jmix.petclinic.listener;
+
+import io.jmix.core.security.SystemAuthenticator;
+import io.jmix.petclinic.visit.PopulationTestDataCreation;
+import io.jmix.petclinic.visit.VisitTestDataCreation;
+import io.jmix.petclinic.visit.VisitTestDataStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the window of future visits rolling forward by generating the missing future days on the schedule
+ * configured in {@code petclinic.testdata.visit.top-up-cron}. Disabled if the property is not set.
+ * If the previous generation failed, the whole test data generation is retried instead.
+ */
+@Component("petclinic_TopUpVisitTestdataScheduled")
+@Profile("!online")
+public class TopUpVisitTestdataScheduled {
+
+    @Autowired
+    protected PopulationTestDataCreation populationTestDataCreation;
+    @Autowired
+    protected VisitTestDataCreation visitTestDataCreation;
+    @Autowired
+    protected VisitTestDataStatus visitTestDataStatus;
+    @Autowired
+    protected SystemAuthenticator systemAuthenticator;
+
+    @Scheduled(cron = "${petclinic.testdata.visit.top-up-cron:-}")
+    public void topUpFutureDays() {
+        // the initial generation on startup is still running
+        if (!visitTestDataStatus.isFinished()) {
+            return;
+        }
+
+        if (visitTestDataStatus.getState() == VisitTestDataStatus.State.FAILED) {
+            retryCreateData();
+            return;
+        }
+
+        systemAuthenticator.runWithSystem(visitTestDataCreation::topUpFutureDays);
+    }
+
+    private void retryCreateData() {
+        try {
+            systemAuthenticator.runWithSystem(() -> {
+                populationTestDataCreation.createData();
+                visitTestDataCreation.createData();
+            });
+        } catch (RuntimeException e) {
+            visitTestDataStatus.failed();
+            throw e;
+        }
+    }
+}
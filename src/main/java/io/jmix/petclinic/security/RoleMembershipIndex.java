@@ -0,0 +1,138 @@
+package io.jmix.petclinic.security;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.entity.KeyValueEntity;
+import io.jmix.core.event.AttributeChanges;
+import io.jmix.core.event.EntityChangedEvent;
+import io.jmix.security.role.assignment.RoleAssignment;
+import io.jmix.security.role.assignment.RoleAssignmentRepository;
+import io.jmix.security.role.assignment.RoleAssignmentRoleType;
+import io.jmix.securitydata.entity.RoleAssignmentEntity;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reverse index from resource role code to the usernames that have the role assigned.
+ * <p>
+ * The index is built from the {@link RoleAssignmentRepository} on first use and updated incrementally from
+ * {@link EntityChangedEvent}s of {@link RoleAssignmentEntity}. As a user can have the same role assigned more than
+ * once, the assignments per username are counted.
+ */
+@Component("petclinic_RoleMembershipIndex")
+public class RoleMembershipIndex {
+
+    private final RoleAssignmentRepository roleAssignmentRepository;
+    private final DataManager dataManager;
+
+    private final Map<String, Map<String, Integer>> assignmentsByRoleCode = new ConcurrentHashMap<>();
+    private volatile boolean built;
+
+    public RoleMembershipIndex(RoleAssignmentRepository roleAssignmentRepository, DataManager dataManager) {
+        this.roleAssignmentRepository = roleAssignmentRepository;
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * @return usernames that have the resource role with the given code assigned
+     */
+    public Set<String> getUsernames(String roleCode) {
+        if (!built) {
+            build();
+        }
+        return Set.copyOf(assignmentsByRoleCode.getOrDefault(roleCode, Map.of()).keySet());
+    }
+
+    /**
+     * Runs before other listeners, so that they see the updated index.
+     */
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRoleAssignmentChanged(final EntityChangedEvent<RoleAssignmentEntity> event) {
+        Optional<Assignment> assignment = event.getType() != EntityChangedEvent.Type.DELETED
+                ? loadAssignment(event)
+                : Optional.empty();
+        update(event, assignment);
+    }
+
+    /**
+     * Synchronized with {@link #build()}, so that no change gets lost while the index is built.
+     */
+    private synchronized void update(EntityChangedEvent<RoleAssignmentEntity> event, Optional<Assignment> newAssignment) {
+        if (!built) {
+            // changes before the index is built are contained in the built index
+            return;
+        }
+
+        AttributeChanges changes = event.getChanges();
+        switch (event.getType()) {
+            case CREATED -> newAssignment.ifPresent(this::add);
+            case UPDATED -> newAssignment.ifPresent(assignment -> {
+                remove(new Assignment(
+                        changes.isChanged("username") ? changes.getOldValue("username") : assignment.username(),
+                        changes.isChanged("roleCode") ? changes.getOldValue("roleCode") : assignment.roleCode(),
+                        changes.isChanged("roleType") ? changes.getOldValue("roleType") : assignment.roleType()));
+                add(assignment);
+            });
+            case DELETED -> remove(new Assignment(
+                    changes.getOldValue("username"),
+                    changes.getOldValue("roleCode"),
+                    changes.getOldValue("roleType")));
+        }
+    }
+
+    private Optional<Assignment> loadAssignment(EntityChangedEvent<RoleAssignmentEntity> event) {
+        return dataManager.unconstrained().loadValues(
+                        "select e.username, e.roleCode, e.roleType from sec_RoleAssignmentEntity e where e.id = :id")
+                .properties("username", "roleCode", "roleType")
+                .parameter("id", event.getEntityId().getValue())
+                .optional()
+                .map(RoleMembershipIndex::toAssignment);
+    }
+
+    private static Assignment toAssignment(KeyValueEntity values) {
+        return new Assignment(values.getValue("username"), values.getValue("roleCode"), values.getValue("roleType"));
+    }
+
+    private synchronized void build() {
+        if (built) {
+            return;
+        }
+        for (RoleAssignment roleAssignment : roleAssignmentRepository.getAllAssignments()) {
+            add(new Assignment(roleAssignment.getUsername(), roleAssignment.getRoleCode(), roleAssignment.getRoleType()));
+        }
+        built = true;
+    }
+
+    private void add(Assignment assignment) {
+        if (assignment.isResourceRole()) {
+            assignmentsByRoleCode.computeIfAbsent(assignment.roleCode(), roleCode -> new ConcurrentHashMap<>())
+                    .merge(assignment.username(), 1, Integer::sum);
+        }
+    }
+
+    private void remove(Assignment assignment) {
+        if (assignment.isResourceRole()) {
+            Map<String, Integer> assignments = assignmentsByRoleCode.get(assignment.roleCode());
+            if (assignments != null) {
+                assignments.computeIfPresent(assignment.username(), (username, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+    }
+
+    private record Assignment(String username, String roleCode, String roleType) {
+
+        boolean isResourceRole() {
+            return RoleAssignmentRoleType.RESOURCE.equals(roleType) && username != null && roleCode != null;
+        }
+    }
+}
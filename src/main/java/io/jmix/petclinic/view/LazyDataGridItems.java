@@ -0,0 +1,110 @@
+package io.jmix.petclinic.view;
+
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.provider.SortDirection;
+import io.jmix.core.DataManager;
+import io.jmix.core.LoadContext;
+import io.jmix.core.Sort;
+import io.jmix.flowui.component.grid.DataGrid;
+import io.jmix.flowui.model.CollectionLoader;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Backs a data grid with a lazy data provider. The grid requests only the rows of the visible range plus a buffer
+ * while scrolling, and the rows are not kept as entities in the data container of the view.
+ * <p>
+ * The rows are loaded with the query, conditions, parameters and fetch plan of the given loader, so that filters
+ * bound to the loader keep working. Loading the loader only refreshes the grid. Changes of the loader's container,
+ * e.g. by the list actions, refresh the grid as well.
+ * <p>
+ * The rows are loaded with offset and limit, sorted by the grid's sort order and the id, so that rows with equal
+ * sort values keep their position between requests. A {@link RangeLoader} can load the ranges more efficiently
+ * as long as the grid is not sorted by the user, e.g. with keyset pagination.
+ *
+ * @param <E> entity type
+ */
+public class LazyDataGridItems<E> {
+
+    private final DataGrid<E> dataGrid;
+    private final CollectionLoader<E> loader;
+    private final DataManager dataManager;
+    @Nullable
+    private final RangeLoader<E> rangeLoader;
+
+    private LazyDataGridItems(DataGrid<E> dataGrid, CollectionLoader<E> loader, DataManager dataManager,
+                              @Nullable RangeLoader<E> rangeLoader) {
+        this.dataGrid = dataGrid;
+        this.loader = loader;
+        this.dataManager = dataManager;
+        this.rangeLoader = rangeLoader;
+    }
+
+    public static <E> LazyDataGridItems<E> bind(DataGrid<E> dataGrid, CollectionLoader<E> loader,
+                                               DataManager dataManager) {
+        return bind(dataGrid, loader, dataManager, null);
+    }
+
+    /**
+     * @param rangeLoader loads the rows while the grid is not sorted by the user
+     */
+    public static <E> LazyDataGridItems<E> bind(DataGrid<E> dataGrid, CollectionLoader<E> loader,
+                                               DataManager dataManager, @Nullable RangeLoader<E> rangeLoader) {
+        LazyDataGridItems<E> items = new LazyDataGridItems<>(dataGrid, loader, dataManager, rangeLoader);
+        loader.setLoadDelegate(loadContext -> List.of());
+        loader.getContainer().addCollectionChangeListener(event -> items.refresh());
+        dataGrid.setItems(items::fetch, items::count);
+        return items;
+    }
+
+    public void refresh() {
+        if (rangeLoader != null) {
+            rangeLoader.reset();
+        }
+        dataGrid.getDataProvider().refreshAll();
+    }
+
+    private Stream<E> fetch(Query<E, Void> query) {
+        LoadContext<E> loadContext = loader.createLoadContext();
+        if (rangeLoader != null && query.getSortOrders().isEmpty()) {
+            return rangeLoader.load(loadContext, query.getOffset(), query.getLimit()).stream();
+        }
+
+        LoadContext.Query loadQuery = loadContext.getQuery();
+        loadQuery.setFirstResult(query.getOffset());
+        loadQuery.setMaxResults(query.getLimit());
+
+        List<Sort.Order> orders = new ArrayList<>();
+        query.getSortOrders().forEach(sortOrder -> orders.add(sortOrder.getDirection() == SortDirection.ASCENDING
+                ? Sort.Order.asc(sortOrder.getSorted())
+                : Sort.Order.desc(sortOrder.getSorted())));
+        if (orders.stream().noneMatch(order -> order.getProperty().equals("id"))) {
+            orders.add(Sort.Order.asc("id"));
+        }
+        loadQuery.setSort(Sort.by(orders));
+
+        return dataManager.loadList(loadContext).stream();
+    }
+
+    private int count(Query<E, Void> query) {
+        return (int) Math.min(Integer.MAX_VALUE, dataManager.getCount(loader.createLoadContext()));
+    }
+
+    /**
+     * Loads a range of rows in the order of the loader's query.
+     *
+     * @param <E> entity type
+     */
+    public interface RangeLoader<E> {
+
+        List<E> load(LoadContext<E> loadContext, int offset, int limit);
+
+        /**
+         * Called when the grid is refreshed, e.g. to discard state of previously loaded ranges.
+         */
+        void reset();
+    }
+}
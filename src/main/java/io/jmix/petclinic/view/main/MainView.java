@@ -13,6 +13,7 @@ import io.jmix.flowui.component.main.JmixListMenu;
 import io.jmix.flowui.facet.Timer;
 import io.jmix.flowui.kit.component.main.ListMenu;
 import io.jmix.flowui.view.*;
+import io.jmix.petclinic.entity.visit.VisitTreatmentStatus;
 import io.jmix.petclinic.online.OnlineDemoDataCreator;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -21,6 +22,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 @ViewDescriptor("main-view.xml")
 public class MainView extends StandardMainView {
 
+    /**
+     * Amount of the open visits of a nurse, shown as badge of the menu item of the own visits.
+     */
+    public static final String OPEN_VISITS_OF_NURSE_QUERY = """
+            select count(e) from petclinic_Visit e
+            where e.assignedNurse = :currentUser
+            and e.treatmentStatus <> :doneStatus""";
+
     @Autowired
     private UiComponents uiComponents;
 
@@ -84,11 +93,9 @@ public class MainView extends StandardMainView {
     }
 
     private long calculateAmountOfVisits() {
-        return dataManager.loadValue("select count(e) from petclinic_Visit e " +
-                                "where e.assignedNurse = :currentUser " +
-                                "and e.treatmentStatus <> @enum(io.jmix.petclinic.entity.visit.VisitTreatmentStatus.DONE)",
-                        Long.class)
+        return dataManager.loadValue(OPEN_VISITS_OF_NURSE_QUERY, Long.class)
                 .parameter("currentUser", currentAuthentication.getUser())
+                .parameter("doneStatus", VisitTreatmentStatus.DONE)
                 .one();
     }
 }
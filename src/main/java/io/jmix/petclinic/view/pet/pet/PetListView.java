@@ -1,14 +1,21 @@
 package io.jmix.petclinic.view.pet.pet;
 
+import io.jmix.core.DataManager;
+import io.jmix.flowui.component.grid.DataGrid;
+import io.jmix.flowui.component.pagination.SimplePagination;
 import io.jmix.flowui.component.propertyfilter.PropertyFilter;
 import io.jmix.flowui.kit.action.ActionPerformedEvent;
+import io.jmix.flowui.model.CollectionLoader;
 import io.jmix.petclinic.entity.pet.HealthStatus;
 import io.jmix.petclinic.entity.pet.Pet;
 
+import io.jmix.petclinic.view.LazyDataGridItems;
 import io.jmix.petclinic.view.main.MainView;
 
 import com.vaadin.flow.router.Route;
 import io.jmix.flowui.view.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 
 // tag::start-class[]
@@ -26,6 +33,24 @@ public class PetListView extends StandardListView<Pet> {
     private PropertyFilter typeFilter;
     @ViewComponent
     private PropertyFilter ownerFilter;
+    @ViewComponent
+    private DataGrid<Pet> petsDataGrid;
+    @ViewComponent
+    private CollectionLoader<Pet> petsDl;
+    @ViewComponent
+    private SimplePagination pagination;
+    @Autowired
+    private DataManager dataManager;
+    @Value("${petclinic.ui.lazy-data-grids:false}")
+    private boolean lazyDataGrids;
+
+    @Subscribe
+    public void onInit(final InitEvent event) {
+        if (lazyDataGrids) {
+            LazyDataGridItems.bind(petsDataGrid, petsDl, dataManager);
+            pagination.setVisible(false);
+        }
+    }
 
     @Subscribe("clearFilterAction")
     public void onClearFilterAction(final ActionPerformedEvent event) {
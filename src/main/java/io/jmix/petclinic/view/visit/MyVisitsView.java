@@ -2,15 +2,20 @@ package io.jmix.petclinic.view.visit;
 
 import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.router.Route;
+import io.jmix.core.DataManager;
 import io.jmix.flowui.Notifications;
 import io.jmix.flowui.component.grid.DataGrid;
+import io.jmix.flowui.component.pagination.SimplePagination;
 import io.jmix.flowui.kit.action.ActionPerformedEvent;
+import io.jmix.flowui.model.CollectionLoader;
 import io.jmix.flowui.model.DataContext;
 import io.jmix.flowui.view.*;
 import io.jmix.petclinic.entity.visit.Visit;
 import io.jmix.petclinic.entity.visit.VisitTreatmentStatus;
+import io.jmix.petclinic.view.LazyDataGridItems;
 import io.jmix.petclinic.view.main.MainView;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 @Route(value = "my-visits", layout = MainView.class)
 @ViewController("petclinic_MyVisits")
@@ -27,6 +32,25 @@ public class MyVisitsView extends StandardListView<Visit> {
     private MessageBundle messageBundle;
     @ViewComponent
     private DataContext dataContext;
+    @ViewComponent
+    private CollectionLoader<Visit> visitsDl;
+    @ViewComponent
+    private SimplePagination pagination;
+    @Autowired
+    private DataManager dataManager;
+    @Value("${petclinic.ui.lazy-data-grids:false}")
+    private boolean lazyDataGrids;
+
+    private LazyDataGridItems<Visit> lazyVisitsDataGridItems;
+
+    @Subscribe
+    public void onInit(final InitEvent event) {
+        if (lazyDataGrids) {
+            lazyVisitsDataGridItems = LazyDataGridItems.bind(visitsDataGrid, visitsDl, dataManager,
+                    new VisitKeysetPagination(dataManager));
+            pagination.setVisible(false);
+        }
+    }
 
     @Subscribe("visitsDataGrid.startTreatment")
     public void onStartTreatment(final ActionPerformedEvent event) {
@@ -70,7 +94,13 @@ public class MyVisitsView extends StandardListView<Visit> {
 
     private void updateTreatmentTo(Visit visit, VisitTreatmentStatus targetStatus) {
         visit.setTreatmentStatus(targetStatus);
-        dataContext.save();
+        if (lazyVisitsDataGridItems != null) {
+            // the lazily loaded visits are not part of the data context
+            dataManager.save(visit);
+            lazyVisitsDataGridItems.refresh();
+        } else {
+            dataContext.save();
+        }
     }
 
 }
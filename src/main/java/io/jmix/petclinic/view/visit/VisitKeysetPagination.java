@@ -0,0 +1,222 @@
+package io.jmix.petclinic.view.visit;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.LoadContext;
+import io.jmix.core.Sort;
+import io.jmix.core.querycondition.Condition;
+import io.jmix.core.querycondition.JpqlCondition;
+import io.jmix.core.querycondition.LogicalCondition;
+import io.jmix.petclinic.entity.visit.Visit;
+import io.jmix.petclinic.view.LazyDataGridItems;
+import org.springframework.lang.Nullable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keyset pagination of visits ordered by visit start and id. Instead of skipping rows with an offset, each page
+ * continues after the last visit of the previous page, so that loading a deep page is as fast as loading the first
+ * one. Visits without visit start come first, independent of how the database sorts null values.
+ * <p>
+ * The total count is only calculated when the first page is loaded, not for every page. After visits are created or
+ * removed, it has to be updated with {@link #updateTotalCount(LoadContext)}.
+ * <p>
+ * For a lazy data grid, the ranges requested while scrolling are loaded in the same order. A range that starts
+ * where a previously loaded range ended continues after its last visit. Other ranges, e.g. after dragging the
+ * scrollbar, fall back to an offset within the visits with or without visit start.
+ */
+class VisitKeysetPagination implements LazyDataGridItems.RangeLoader<Visit> {
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final DataManager dataManager;
+    private final int pageSize;
+
+    private final List<Cursor> previousPageCursors = new ArrayList<>();
+    @Nullable
+    private Cursor currentPageCursor;
+    @Nullable
+    private Cursor nextPageCursor;
+    private long totalCount;
+
+    private final Map<Integer, Cursor> rangeCursors = new HashMap<>();
+    @Nullable
+    private Long visitsWithoutStartCount;
+
+    /**
+     * Creates a pagination that is only used to load the ranges of a lazy data grid.
+     */
+    VisitKeysetPagination(DataManager dataManager) {
+        this(dataManager, DEFAULT_PAGE_SIZE);
+    }
+
+    VisitKeysetPagination(DataManager dataManager, int pageSize) {
+        this.dataManager = dataManager;
+        this.pageSize = pageSize;
+    }
+
+    List<Visit> loadFirstPage(LoadContext<Visit> loadContext) {
+        previousPageCursors.clear();
+        currentPageCursor = null;
+        totalCount = dataManager.getCount(loadContext);
+        return loadPage(loadContext);
+    }
+
+    List<Visit> loadNextPage(LoadContext<Visit> loadContext) {
+        if (nextPageCursor == null) {
+            return loadPage(loadContext);
+        }
+        previousPageCursors.add(currentPageCursor);
+        currentPageCursor = nextPageCursor;
+        return loadPage(loadContext);
+    }
+
+    List<Visit> loadPreviousPage(LoadContext<Visit> loadContext) {
+        if (!previousPageCursors.isEmpty()) {
+            currentPageCursor = previousPageCursors.remove(previousPageCursors.size() - 1);
+        }
+        return loadPage(loadContext);
+    }
+
+    boolean hasPreviousPage() {
+        return !previousPageCursors.isEmpty();
+    }
+
+    boolean hasNextPage() {
+        return nextPageCursor != null;
+    }
+
+    /**
+     * @return one-based number of the first visit of the current page
+     */
+    long getFirstRowNumber() {
+        return (long) previousPageCursors.size() * pageSize + 1;
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Counts the visits again, e.g. after visits are created or removed, without changing the current page.
+     */
+    void updateTotalCount(LoadContext<Visit> loadContext) {
+        totalCount = dataManager.getCount(loadContext);
+    }
+
+    @Override
+    public List<Visit> load(LoadContext<Visit> loadContext, int offset, int limit) {
+        Cursor cursor = rangeCursors.get(offset);
+        List<Visit> visits = offset == 0 || cursor != null
+                ? loadAfter(loadContext, cursor, limit)
+                : loadFromOffset(loadContext, offset, limit);
+
+        if (!visits.isEmpty()) {
+            Visit lastVisit = visits.get(visits.size() - 1);
+            rangeCursors.put(offset + visits.size(), new Cursor(lastVisit.getVisitStart(), lastVisit.getId()));
+        }
+        return visits;
+    }
+
+    @Override
+    public void reset() {
+        rangeCursors.clear();
+        visitsWithoutStartCount = null;
+    }
+
+    private List<Visit> loadPage(LoadContext<Visit> loadContext) {
+        // one more visit than the page size shows whether there is a next page
+        List<Visit> visits = loadAfter(loadContext, currentPageCursor, pageSize + 1);
+
+        if (visits.size() > pageSize) {
+            visits = new ArrayList<>(visits.subList(0, pageSize));
+            Visit lastVisit = visits.get(visits.size() - 1);
+            nextPageCursor = new Cursor(lastVisit.getVisitStart(), lastVisit.getId());
+        } else {
+            nextPageCursor = null;
+        }
+        return visits;
+    }
+
+    /**
+     * @return up to {@code maxResults} visits following the cursor, or the first visits if there is no cursor
+     */
+    private List<Visit> loadAfter(LoadContext<Visit> loadContext, @Nullable Cursor cursor, int maxResults) {
+        List<Visit> visits = new ArrayList<>();
+        if (cursor == null) {
+            visits.addAll(loadSegment(loadContext, "e.visitStart is null", Map.of(), maxResults));
+        } else if (cursor.visitStart() == null) {
+            visits.addAll(loadSegment(loadContext, "e.visitStart is null and e.id > :keysetId",
+                    Map.of("keysetId", cursor.id()), maxResults));
+        }
+
+        if (visits.size() < maxResults) {
+            int remaining = maxResults - visits.size();
+            if (cursor == null || cursor.visitStart() == null) {
+                visits.addAll(loadSegment(loadContext, "e.visitStart is not null", Map.of(), remaining));
+            } else {
+                visits.addAll(loadSegment(loadContext,
+                        "(e.visitStart > :keysetVisitStart or (e.visitStart = :keysetVisitStart and e.id > :keysetId))",
+                        Map.of("keysetVisitStart", cursor.visitStart(), "keysetId", cursor.id()), remaining));
+            }
+        }
+        return visits;
+    }
+
+    /**
+     * @return up to {@code maxResults} visits following the first {@code offset} visits
+     */
+    private List<Visit> loadFromOffset(LoadContext<Visit> loadContext, int offset, int maxResults) {
+        if (visitsWithoutStartCount == null) {
+            visitsWithoutStartCount = dataManager.getCount(
+                    segmentContext(loadContext, "e.visitStart is null", Map.of()));
+        }
+
+        List<Visit> visits = new ArrayList<>();
+        if (offset < visitsWithoutStartCount) {
+            visits.addAll(loadSegment(loadContext, "e.visitStart is null", Map.of(), offset, maxResults));
+        }
+        if (visits.size() < maxResults) {
+            int firstResult = (int) Math.max(0, offset - visitsWithoutStartCount);
+            visits.addAll(loadSegment(loadContext, "e.visitStart is not null", Map.of(),
+                    firstResult, maxResults - visits.size()));
+        }
+        return visits;
+    }
+
+    private List<Visit> loadSegment(LoadContext<Visit> loadContext, String keysetCondition,
+                                    Map<String, Object> keysetParameters, int maxResults) {
+        return loadSegment(loadContext, keysetCondition, keysetParameters, 0, maxResults);
+    }
+
+    private List<Visit> loadSegment(LoadContext<Visit> loadContext, String keysetCondition,
+                                    Map<String, Object> keysetParameters, int firstResult, int maxResults) {
+        LoadContext<Visit> segmentContext = segmentContext(loadContext, keysetCondition, keysetParameters);
+        LoadContext.Query query = segmentContext.getQuery();
+        query.setSort(Sort.by("visitStart", "id"));
+        query.setFirstResult(firstResult);
+        query.setMaxResults(maxResults);
+
+        return dataManager.loadList(segmentContext);
+    }
+
+    private LoadContext<Visit> segmentContext(LoadContext<Visit> loadContext, String keysetCondition,
+                                              Map<String, Object> keysetParameters) {
+        LoadContext<Visit> segmentContext = loadContext.copy();
+        LoadContext.Query query = segmentContext.getQuery();
+
+        Condition condition = JpqlCondition.create(keysetCondition, null);
+        query.setCondition(query.getCondition() == null
+                ? condition
+                : LogicalCondition.and(query.getCondition(), condition));
+        keysetParameters.forEach(query::setParameter);
+        return segmentContext;
+    }
+
+    private record Cursor(@Nullable LocalDateTime visitStart, UUID id) {
+    }
+}
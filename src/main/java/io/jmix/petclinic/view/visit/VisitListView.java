@@ -1,40 +1,62 @@
 package io.jmix.petclinic.view.visit;
 
 import com.vaadin.flow.component.AbstractField;
+import com.vaadin.flow.component.ClickEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.html.H4;
+import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.tabs.Tab;
 import com.vaadin.flow.router.Route;
+import io.jmix.core.DataManager;
+import io.jmix.core.LoadContext;
+import io.jmix.core.Messages;
 import io.jmix.core.metamodel.datatype.DatatypeFormatter;
 import io.jmix.core.security.CurrentAuthentication;
 import io.jmix.flowui.DialogWindows;
+import io.jmix.flowui.Notifications;
 import io.jmix.flowui.component.checkboxgroup.JmixCheckboxGroup;
 import io.jmix.flowui.component.genericfilter.GenericFilter;
 import io.jmix.flowui.component.grid.DataGrid;
 import io.jmix.flowui.component.select.JmixSelect;
 import io.jmix.flowui.component.tabsheet.JmixTabSheet;
 import io.jmix.flowui.kit.action.ActionPerformedEvent;
+import io.jmix.flowui.kit.component.button.JmixButton;
+import io.jmix.flowui.model.CollectionChangeType;
+import io.jmix.flowui.model.CollectionContainer;
 import io.jmix.flowui.model.CollectionLoader;
-import io.jmix.flowui.model.DataContext;
 import io.jmix.flowui.view.*;
 import io.jmix.fullcalendarflowui.component.FullCalendar;
-import io.jmix.fullcalendarflowui.component.data.EntityCalendarEvent;
+import io.jmix.fullcalendarflowui.component.data.CalendarEvent;
+import io.jmix.fullcalendarflowui.component.data.ListCalendarDataProvider;
+import io.jmix.fullcalendarflowui.component.data.SimpleCalendarEvent;
 import io.jmix.fullcalendarflowui.component.event.*;
 import io.jmix.petclinic.entity.pet.Pet;
 import io.jmix.petclinic.entity.visit.Visit;
+import io.jmix.petclinic.entity.visit.VisitRescheduleResult;
+import io.jmix.petclinic.entity.visit.VisitRescheduler;
 import io.jmix.petclinic.entity.visit.VisitType;
+import io.jmix.petclinic.view.LazyDataGridItems;
 import io.jmix.petclinic.view.main.MainView;
 import io.jmix.petclinic.view.visit.calendar.MonthFormatter;
+import io.jmix.petclinic.view.visit.calendar.VisitCalendarEntries;
+import io.jmix.petclinic.view.visit.calendar.VisitCalendarEntry;
+import io.jmix.petclinic.view.visit.calendar.VisitDayCount;
 import io.jmix.petclinic.view.visit.visit.RegularCheckupDetailView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
 
 
 // tag::start-class[]
@@ -45,6 +67,7 @@ import java.util.Set;
 public class VisitListView extends StandardListView<Visit> {
 
     private static final Logger log = LoggerFactory.getLogger(VisitListView.class);
+    private static final int VISITS_PAGE_SIZE = 50;
 
     @Autowired
     private DialogWindows dialogWindows;
@@ -57,11 +80,21 @@ public class VisitListView extends StandardListView<Visit> {
     private DatatypeFormatter datatypeFormatter;
     @Autowired
     private CurrentAuthentication currentAuthentication;
+    @Autowired
+    private DataManager dataManager;
+    @Autowired
+    private VisitCalendarEntries visitCalendarEntries;
+    @Autowired
+    private Messages messages;
+    @Autowired
+    private VisitRescheduler visitRescheduler;
+    @Value("${petclinic.ui.lazy-data-grids:false}")
+    private boolean lazyDataGrids;
+    @Autowired
+    private Notifications notifications;
     @ViewComponent
     private JmixCheckboxGroup<VisitType> visitTypeField;
     @ViewComponent
-    private CollectionLoader<Visit> visitsCalendarDl;
-    @ViewComponent
     private H4 calendarTitle;
     @ViewComponent
     private FullCalendar calendar;
@@ -70,17 +103,36 @@ public class VisitListView extends StandardListView<Visit> {
     @ViewComponent("contentTabSheet.allVisitsTab")
     private Tab contentTabSheetAllVisitsTab;
     @ViewComponent
-    private CollectionLoader<Visit> visitsDl;
+    private CollectionContainer<Visit> visitsDc;
     @ViewComponent
-    private DataContext dataContext;
+    private CollectionLoader<Visit> visitsDl;
     @ViewComponent
     private GenericFilter genericFilter;
     @ViewComponent
+    private Span pageInfo;
+    @ViewComponent
+    private JmixButton previousPageBtn;
+    @ViewComponent
+    private JmixButton nextPageBtn;
+    @ViewComponent
     private MessageBundle messageBundle;
 
+    private final ListCalendarDataProvider visitsCalendarProvider = new ListCalendarDataProvider();
+    private LocalDateTime visibleStart;
+    private LocalDateTime visibleEnd;
+    private boolean summaryEventsShown;
+    private VisitKeysetPagination visitsPagination;
+    private PageRequest pageRequest = PageRequest.FIRST;
+    private final Map<UUID, Integer> displayedVersions = new HashMap<>();
+    private List<VisitDayCount> dailyCounts = List.of();
+    private LocalDateTime dailyCountsStart;
+    private LocalDateTime dailyCountsEnd;
+
     @Subscribe
     public void onInit(final InitEvent event) {
+        initVisitsDataGrid();
         initTypeFilter();
+        calendar.addDataProvider(visitsCalendarProvider);
     }
 
     @Subscribe
@@ -88,6 +140,18 @@ public class VisitListView extends StandardListView<Visit> {
         setCalendarViewMode(CalendarViewMode.MONTH);
     }
 
+    private void initVisitsDataGrid() {
+        if (lazyDataGrids) {
+            LazyDataGridItems.bind(visitsDataGrid, visitsDl, dataManager,
+                    new VisitKeysetPagination(dataManager));
+            previousPageBtn.setVisible(false);
+            pageInfo.setVisible(false);
+            nextPageBtn.setVisible(false);
+        } else {
+            visitsPagination = new VisitKeysetPagination(dataManager, VISITS_PAGE_SIZE);
+        }
+    }
+
     private void setCalendarViewMode(CalendarViewMode viewMode) {
         calendarViewMode.setValue(viewMode);
     }
@@ -97,14 +161,140 @@ public class VisitListView extends StandardListView<Visit> {
         visitTypeField.setValue(EnumSet.allOf(VisitType.class));
     }
 
+    /**
+     * Sets the events of the visible range. The month view shows the amount of visits per day and type. The visits
+     * themselves are only loaded for the day and week view. The type filter is applied in memory, so changing it
+     * does not query the database.
+     */
+    private void loadEvents() {
+        if (visibleStart == null || visibleEnd == null) {
+            return;
+        }
+
+        summaryEventsShown = isMonthView();
+        displayedVersions.clear();
+        List<CalendarEvent> events = summaryEventsShown
+                ? dailyCounts(visibleStart, visibleEnd)
+                        .stream()
+                        .filter(dayCount -> selectedTypes().contains(dayCount.type()))
+                        .map(this::toSummaryCalendarEvent)
+                        .toList()
+                : visitCalendarEntries.load(visibleStart, visibleEnd, selectedTypes())
+                        .stream()
+                        .map(this::toCalendarEvent)
+                        .toList();
+        visitsCalendarProvider.setItems(events);
+    }
+
+    private Set<VisitType> selectedTypes() {
+        return Objects.requireNonNullElse(visitTypeField.getValue(), Set.of());
+    }
+
+    /**
+     * Applies a saved visit to the displayed events, so that only the changed event is sent to the browser
+     * instead of all events of the visible range.
+     */
+    private void showSavedVisit(Visit visit) {
+        if (summaryEventsShown) {
+            reloadEvents();
+            return;
+        }
+
+        VisitCalendarEntry entry = VisitCalendarEntry.of(visit);
+        CalendarEvent displayedEvent = visitsCalendarProvider.getItem(entry.visitId());
+        if (!isInVisibleRange(entry) || !selectedTypes().contains(entry.type())) {
+            if (displayedEvent != null) {
+                visitsCalendarProvider.removeItem(displayedEvent);
+                displayedVersions.remove(entry.visitId());
+            }
+        } else if (displayedEvent instanceof SimpleCalendarEvent simpleCalendarEvent) {
+            applyEntry(simpleCalendarEvent, entry);
+            visitsCalendarProvider.updateItem(simpleCalendarEvent);
+        } else {
+            visitsCalendarProvider.addItem(toCalendarEvent(entry));
+        }
+    }
+
+    private boolean isInVisibleRange(VisitCalendarEntry entry) {
+        return !entry.visitStart().isBefore(visibleStart) && entry.visitEnd().isBefore(visibleEnd);
+    }
+
+    private List<VisitDayCount> dailyCounts(LocalDateTime start, LocalDateTime end) {
+        if (!start.equals(dailyCountsStart) || !end.equals(dailyCountsEnd)) {
+            dailyCounts = visitCalendarEntries.loadDailyCounts(start, end);
+            dailyCountsStart = start;
+            dailyCountsEnd = end;
+        }
+        return dailyCounts;
+    }
+
+    private boolean isMonthView() {
+        return CalendarViewMode.fromCalendarDisplayMode(calendar.getCurrentCalendarDisplayMode())
+                .map(CalendarViewMode.MONTH::equals)
+                .orElse(false);
+    }
+
+    private CalendarEvent toSummaryCalendarEvent(VisitDayCount dayCount) {
+        return SimpleCalendarEvent.create()
+                .withId(new VisitDaySummaryId(dayCount.day(), dayCount.type()))
+                .withTitle(messageBundle.formatMessage("visitDaySummary",
+                        messages.getMessage(dayCount.type()), dayCount.amount()))
+                .withStartDateTime(dayCount.day().atStartOfDay())
+                .withAllDay(true)
+                .withStartEditable(false)
+                .withDurationEditable(false)
+                .withBackgroundColor(dayCount.type().getBackgroundColor())
+                .withBorderColor(dayCount.type().getBorderColor())
+                .withTextColor(dayCount.type().getTextColor())
+                .build();
+    }
+
+    private CalendarEvent toCalendarEvent(VisitCalendarEntry entry) {
+        SimpleCalendarEvent calendarEvent = SimpleCalendarEvent.create()
+                .withId(entry.visitId())
+                .build();
+        applyEntry(calendarEvent, entry);
+        return calendarEvent;
+    }
+
+    private void applyEntry(SimpleCalendarEvent calendarEvent, VisitCalendarEntry entry) {
+        displayedVersions.put(entry.visitId(), entry.version());
+        calendarEvent.setTitle(entry.petName());
+        calendarEvent.setStartDateTime(entry.visitStart());
+        calendarEvent.setEndDateTime(entry.visitEnd());
+        calendarEvent.setBackgroundColor(entry.type().getBackgroundColor());
+        calendarEvent.setBorderColor(entry.type().getBorderColor());
+        calendarEvent.setTextColor(entry.type().getTextColor());
+    }
+
     @Subscribe("calendar")
     public void onCalendarEventClick(final EventClickEvent event) {
-        EntityCalendarEvent<Visit> entityCalendarEvent = event.getCalendarEvent();
+        if (event.getCalendarEvent().getId() instanceof VisitDaySummaryId summaryId) {
+            calendar.navigateToDate(summaryId.day());
+            calendar.setCalendarDisplayMode(CalendarViewMode.DAY.getCalendarDisplayMode());
+            return;
+        }
+
         dialogWindows.detail(this, Visit.class)
-                .editEntity(entityCalendarEvent.getEntity())
+                .withViewClass(VisitDetailView.class)
+                .editEntity(loadVisit(event.getCalendarEvent()))
+                .withAfterCloseListener(afterCloseEvent -> {
+                    if (afterCloseEvent.closedWith(StandardOutcome.SAVE)) {
+                        showSavedVisit(afterCloseEvent.getView().getEditedEntity());
+                    }
+                })
                 .open();
     }
 
+    private record VisitDaySummaryId(LocalDate day, VisitType type) {
+    }
+
+    private Visit loadVisit(CalendarEvent calendarEvent) {
+        return dataManager.load(Visit.class)
+                .id((UUID) calendarEvent.getId())
+                .one();
+    }
+
     @Subscribe("calendarHome")
     public void onCalendarHome(final ActionPerformedEvent event) {
         calendar.navigateToToday();
@@ -155,14 +345,15 @@ public class VisitListView extends StandardListView<Visit> {
                 .ifPresent(it -> {
                     if (it.equals(CalendarViewMode.DAY) || it.equals(CalendarViewMode.WEEK)) {
                         dialogWindows.detail(this, Visit.class)
+                                .withViewClass(VisitDetailView.class)
                                 .newEntity()
                                 .withInitializer(visit -> {
                                     visit.setVisitStart(event.getStartDateTime());
                                     visit.setVisitEnd(event.getEndDateTime());
                                 })
-                                .withAfterCloseListener((DialogWindow.AfterCloseEvent<View<?>> afterCloseEvent) -> {
+                                .withAfterCloseListener(afterCloseEvent -> {
                                     if (afterCloseEvent.closedWith(StandardOutcome.SAVE)) {
-                                        reloadEvents();
+                                        showSavedVisit(afterCloseEvent.getView().getEditedEntity());
                                     }
                                 })
                                 .open();
@@ -180,19 +371,47 @@ public class VisitListView extends StandardListView<Visit> {
         updateVisit(event.getCalendarEvent());
     }
 
-    private void updateVisit(EntityCalendarEvent<Visit> event) {
-        LocalDateTime visitStart = event.getEntity().getVisitStart();
-        LocalDateTime visitEnd = event.getEntity().getVisitEnd();
+    private void updateVisit(CalendarEvent event) {
+        UUID visitId = (UUID) event.getId();
+        LocalDateTime visitStart = event.getStartDateTime();
+        LocalDateTime visitEnd = event.getEndDateTime();
         log.info("Visit time changed to: {} - {}", visitStart, visitEnd);
-        dataContext.save();
+
+        UI ui = UI.getCurrent();
+        visitRescheduler.reschedule(visitId, displayedVersions.get(visitId), visitStart, visitEnd,
+                result -> ui.access(() -> onVisitRescheduled(result)));
+    }
+
+    private void onVisitRescheduled(VisitRescheduleResult result) {
+        if (!result.conflict()) {
+            displayedVersions.put(result.visitId(), result.version());
+            return;
+        }
+
+        notifications.create(messageBundle.getMessage("visitRescheduleConflict"))
+                .withType(Notifications.Type.WARNING)
+                .show();
+
+        // show the visit as it is stored
+        CalendarEvent displayedEvent = visitsCalendarProvider.getItem(result.visitId());
+        if (displayedEvent == null) {
+            return;
+        }
+        if (result.version() == null) {
+            visitsCalendarProvider.removeItem(displayedEvent);
+            displayedVersions.remove(result.visitId());
+        } else {
+            displayedEvent.setStartDateTime(result.visitStart());
+            displayedEvent.setEndDateTime(result.visitEnd());
+            visitsCalendarProvider.updateItem(displayedEvent);
+            displayedVersions.put(result.visitId(), result.version());
+        }
     }
 
     @Subscribe("calendar")
     public void onCalendarDatesSet(final DatesSetEvent event) {
         DisplayModeInfo displayModeInfo = event.getDisplayModeInfo();
 
-        loadEvents(displayModeInfo.getActiveStartDate().atStartOfDay(), displayModeInfo.getActiveEndDate().atStartOfDay());
-
         CalendarViewMode.fromCalendarDisplayMode(displayModeInfo.getDisplayMode())
                 .ifPresent(it -> {
                     setCalendarViewMode(it);
@@ -202,6 +421,10 @@ public class VisitListView extends StandardListView<Visit> {
                 });
 
         calendarTitle.setText(calculateTitle(event));
+
+        visibleStart = displayModeInfo.getActiveStartDate().atStartOfDay();
+        visibleEnd = displayModeInfo.getActiveEndDate().atStartOfDay();
+        loadEvents();
     }
 
     private String calculateTitle(DatesSetEvent e) {
@@ -216,27 +439,73 @@ public class VisitListView extends StandardListView<Visit> {
 
     @Subscribe("visitTypeField")
     public void onVisitTypeFieldComponentValueChange(final AbstractField.ComponentValueChangeEvent<JmixCheckboxGroup, Set<VisitType>> event) {
-        visitsCalendarDl.setParameter("type", event.getValue());
+        // filters the already loaded events
+        loadEvents();
+    }
 
-        if (visitsCalendarDl.getParameters().containsKey("visitStart") && visitsCalendarDl.getParameters().containsKey("visitEnd")) {
-            visitsCalendarDl.load();
-        }
+    private void reloadEvents() {
+        dailyCountsStart = null;
+        dailyCountsEnd = null;
+        loadEvents();
     }
 
-    private void loadEvents(LocalDateTime start, LocalDateTime end) {
-        if (parameterValueChanged("visitStart", start) || parameterValueChanged("visitEnd", end)) {
-            visitsCalendarDl.setParameter("visitStart", start);
-            visitsCalendarDl.setParameter("visitEnd", end);
-            visitsCalendarDl.load();
+    /**
+     * The visits are paged with a keyset instead of an offset, see {@link VisitKeysetPagination}.
+     */
+    @Install(to = "visitsDl", target = Target.DATA_LOADER)
+    private List<Visit> visitsDlLoadDelegate(final LoadContext<Visit> loadContext) {
+        PageRequest request = pageRequest;
+        pageRequest = PageRequest.FIRST;
+
+        List<Visit> visits = switch (request) {
+            case FIRST -> visitsPagination.loadFirstPage(loadContext);
+            case NEXT -> visitsPagination.loadNextPage(loadContext);
+            case PREVIOUS -> visitsPagination.loadPreviousPage(loadContext);
+        };
+        updatePaginationComponents(visits.size());
+        return visits;
+    }
+
+    private void updatePaginationComponents(int pageSize) {
+        long firstRowNumber = visitsPagination.getFirstRowNumber();
+        pageInfo.setText(pageSize == 0
+                ? ""
+                : messageBundle.formatMessage("visitsPageInfo",
+                firstRowNumber, firstRowNumber + pageSize - 1, visitsPagination.getTotalCount()));
+        previousPageBtn.setEnabled(visitsPagination.hasPreviousPage());
+        nextPageBtn.setEnabled(visitsPagination.hasNextPage());
+    }
+
+    /**
+     * Visits created or removed in the grid change the total count, which is otherwise only calculated
+     * for the first page.
+     */
+    @Subscribe(id = "visitsDc", target = Target.DATA_CONTAINER)
+    public void onVisitsDcCollectionChange(final CollectionContainer.CollectionChangeEvent<Visit> event) {
+        if (visitsPagination == null) {
+            return;
+        }
+        if (event.getChangeType() == CollectionChangeType.ADD_ITEMS
+                || event.getChangeType() == CollectionChangeType.REMOVE_ITEMS) {
+            visitsPagination.updateTotalCount(visitsDl.createLoadContext());
+            updatePaginationComponents(visitsDc.getItems().size());
         }
     }
 
-    private boolean parameterValueChanged(String parameterName, LocalDateTime newValue) {
-        return !Objects.equals(visitsCalendarDl.getParameter(parameterName), newValue);
+    @Subscribe(id = "previousPageBtn", subject = "clickListener")
+    public void onPreviousPageBtnClick(final ClickEvent<JmixButton> event) {
+        pageRequest = PageRequest.PREVIOUS;
+        visitsDl.load();
     }
 
-    private void reloadEvents() {
-        visitsCalendarDl.load();
+    @Subscribe(id = "nextPageBtn", subject = "clickListener")
+    public void onNextPageBtnClick(final ClickEvent<JmixButton> event) {
+        pageRequest = PageRequest.NEXT;
+        visitsDl.load();
+    }
+
+    private enum PageRequest {
+        FIRST, NEXT, PREVIOUS
     }
 
     @Subscribe("contentTabSheet")
@@ -0,0 +1,74 @@
+package io.jmix.petclinic.view.visit;
+
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.router.BeforeEnterEvent;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import io.jmix.core.Messages;
+import io.jmix.flowui.Notifications;
+import io.jmix.petclinic.view.main.MainView;
+import io.jmix.petclinic.visit.VisitTestDataAvailability;
+import io.jmix.petclinic.visit.VisitTestDataStatus;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Keeps users out of the views that show visits as long as the visit test data is generated
+ * and redirects them to the main view instead. All other views are available right away.
+ * If the generation failed, the views are available with the data that exists.
+ */
+@Component("petclinic_VisitTestDataReadinessGate")
+public class VisitTestDataReadinessGate implements VaadinServiceInitListener {
+
+    private static final Set<Class<?>> VIEWS_REQUIRING_VISIT_TEST_DATA = Set.of(
+            VisitListView.class,
+            MyVisitsView.class
+    );
+
+    private final ApplicationAvailability applicationAvailability;
+    private final VisitTestDataStatus visitTestDataStatus;
+    private final Notifications notifications;
+    private final Messages messages;
+
+    public VisitTestDataReadinessGate(
+            ApplicationAvailability applicationAvailability,
+            VisitTestDataStatus visitTestDataStatus,
+            Notifications notifications,
+            Messages messages) {
+        this.applicationAvailability = applicationAvailability;
+        this.visitTestDataStatus = visitTestDataStatus;
+        this.notifications = notifications;
+        this.messages = messages;
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        event.getSource().addUIInitListener(uiInitEvent ->
+                uiInitEvent.getUI().addBeforeEnterListener(this::onBeforeEnter));
+    }
+
+    private void onBeforeEnter(BeforeEnterEvent event) {
+        if (VIEWS_REQUIRING_VISIT_TEST_DATA.contains(event.getNavigationTarget()) && !visitTestDataAvailable()) {
+            notifications.create(messages.formatMessage(getClass(), "visitTestDataNotReady",
+                            visitTestDataStatus.getDaysDone(),
+                            visitTestDataStatus.getTotalDays(),
+                            visitTestDataStatus.getVisitsWritten()))
+                    .withType(Notifications.Type.WARNING)
+                    .withPosition(Notification.Position.BOTTOM_END)
+                    .show();
+            event.rerouteTo(MainView.class);
+        }
+    }
+
+    private boolean visitTestDataAvailable() {
+        if (visitTestDataStatus.getState() == VisitTestDataStatus.State.FAILED) {
+            return true;
+        }
+        return applicationAvailability.getState(
+                VisitTestDataAvailability.class,
+                VisitTestDataAvailability.ACCEPTING_TRAFFIC
+        ) == VisitTestDataAvailability.ACCEPTING_TRAFFIC;
+    }
+}
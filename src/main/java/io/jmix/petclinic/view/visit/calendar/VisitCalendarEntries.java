@@ -0,0 +1,283 @@
+package io.jmix.petclinic.view.visit.calendar;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.PersistenceHints;
+import io.jmix.core.entity.KeyValueEntity;
+import io.jmix.core.event.AttributeChanges;
+import io.jmix.core.event.EntityChangedEvent;
+import io.jmix.core.security.SystemAuthenticator;
+import io.jmix.petclinic.entity.pet.Pet;
+import io.jmix.petclinic.entity.visit.Visit;
+import io.jmix.petclinic.entity.visit.VisitType;
+import io.jmix.petclinic.entity.visit.VisitsBulkInsertedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the visits of a time range as {@link VisitCalendarEntry} projections, so that displaying the calendar
+ * does not load visit entities with all their attributes.
+ * <p>
+ * The entries are cached application-wide per month for all visit types, so that users navigating the same
+ * months share the loaded entries and filtering by type does not query the database. After a range is requested,
+ * the months before and after it are prefetched in the background. Months are invalidated when visits starting
+ * in them change, including visits inserted without entity events (see {@link VisitsBulkInsertedEvent}).
+ */
+@Component("petclinic_VisitCalendarEntries")
+public class VisitCalendarEntries {
+
+    private static final Logger log = LoggerFactory.getLogger(VisitCalendarEntries.class);
+
+    private static final int MAX_CACHED_MONTHS = 120;
+
+    /**
+     * Amount of visits per day and type of a time range, see {@link #loadDailyCounts(LocalDateTime, LocalDateTime)}.
+     */
+    public static final String DAILY_COUNTS_QUERY = """
+            select extract(year from e.visitStart), extract(month from e.visitStart),
+            extract(day from e.visitStart), e.type, count(e)
+            from petclinic_Visit e
+            where e.visitStart >= :visitStart and e.visitEnd < :visitEnd
+            group by extract(year from e.visitStart), extract(month from e.visitStart),
+            extract(day from e.visitStart), e.type""";
+
+    private final DataManager dataManager;
+    private final SystemAuthenticator systemAuthenticator;
+
+    private final ExecutorService prefetchExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("visit-calendar-prefetch-", 0).factory());
+    private final Map<YearMonth, CompletableFuture<List<VisitCalendarEntry>>> entriesByMonth =
+            Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<YearMonth, CompletableFuture<List<VisitCalendarEntry>>> eldest) {
+                    return size() > MAX_CACHED_MONTHS;
+                }
+            });
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    public VisitCalendarEntries(DataManager dataManager, SystemAuthenticator systemAuthenticator) {
+        this.dataManager = dataManager;
+        this.systemAuthenticator = systemAuthenticator;
+    }
+
+    /**
+     * @return visits that start at or after {@code start} and end before {@code end} with one of the given types,
+     * ordered by visit start
+     */
+    public List<VisitCalendarEntry> load(LocalDateTime start, LocalDateTime end, Collection<VisitType> types) {
+        if (types.isEmpty() || !start.isBefore(end)) {
+            return List.of();
+        }
+
+        YearMonth firstMonth = YearMonth.from(start);
+        YearMonth lastMonth = YearMonth.from(end.minusNanos(1));
+
+        List<VisitCalendarEntry> entries = new ArrayList<>();
+        for (YearMonth month = firstMonth; !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            for (VisitCalendarEntry entry : cachedEntries(month)) {
+                if (types.contains(entry.type())
+                        && !entry.visitStart().isBefore(start) && entry.visitEnd().isBefore(end)) {
+                    entries.add(entry);
+                }
+            }
+        }
+
+        prefetch(firstMonth.minusMonths(1));
+        prefetch(lastMonth.plusMonths(1));
+
+        return entries;
+    }
+
+    /**
+     * Counts the visits per day and type with one grouped query instead of loading them. Used by the month view,
+     * which only shows a summary per day. All types are counted, so that the caller can filter them in memory.
+     *
+     * @return amount of visits per day and type for the visits that start at or after {@code start} and end
+     * before {@code end}, ordered by day
+     */
+    public List<VisitDayCount> loadDailyCounts(LocalDateTime start, LocalDateTime end) {
+        if (!start.isBefore(end)) {
+            return List.of();
+        }
+
+        return dataManager.loadValues(DAILY_COUNTS_QUERY)
+                .properties("year", "month", "day", "type", "amount")
+                .parameter("visitStart", start)
+                .parameter("visitEnd", end)
+                .list()
+                .stream()
+                .map(VisitCalendarEntries::toDayCount)
+                .sorted(Comparator.comparing(VisitDayCount::day))
+                .toList();
+    }
+
+    private static VisitDayCount toDayCount(KeyValueEntity values) {
+        return new VisitDayCount(
+                LocalDate.of(
+                        values.<Number>getValue("year").intValue(),
+                        values.<Number>getValue("month").intValue(),
+                        values.<Number>getValue("day").intValue()),
+                VisitType.fromId(values.getValue("type")),
+                values.<Number>getValue("amount").longValue());
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    private List<VisitCalendarEntry> cachedEntries(YearMonth month) {
+        CompletableFuture<List<VisitCalendarEntry>> entries = entriesByMonth.get(month);
+        if (entries != null) {
+            cacheHits.incrementAndGet();
+            return entries.join();
+        }
+
+        cacheMisses.incrementAndGet();
+        CompletableFuture<List<VisitCalendarEntry>> loading = new CompletableFuture<>();
+        entries = entriesByMonth.putIfAbsent(month, loading);
+        if (entries != null) {
+            // loaded concurrently, e.g. by a prefetch
+            return entries.join();
+        }
+
+        try {
+            loading.complete(loadMonth(month));
+        } catch (RuntimeException e) {
+            entriesByMonth.remove(month, loading);
+            loading.completeExceptionally(e);
+            throw e;
+        }
+        return loading.join();
+    }
+
+    private void prefetch(YearMonth month) {
+        if (entriesByMonth.containsKey(month)) {
+            return;
+        }
+        prefetchExecutor.execute(() -> {
+            try {
+                systemAuthenticator.runWithSystem(() -> cachedEntries(month));
+            } catch (RuntimeException e) {
+                log.debug("Error prefetching calendar entries of {}", month, e);
+            }
+        });
+    }
+
+    /**
+     * The cache is shared by all users, so the visits are loaded without row-level constraints.
+     */
+    private List<VisitCalendarEntry> loadMonth(YearMonth month) {
+        return dataManager.unconstrained().loadValues("""
+                        select e.id, e.version, e.visitStart, e.visitEnd, e.type, e.pet.name
+                        from petclinic_Visit e
+                        where e.visitStart >= :visitStart and e.visitStart < :nextMonthStart
+                        order by e.visitStart""")
+                .properties("id", "version", "visitStart", "visitEnd", "type", "petName")
+                .parameter("visitStart", month.atDay(1).atStartOfDay())
+                .parameter("nextMonthStart", month.plusMonths(1).atDay(1).atStartOfDay())
+                .list()
+                .stream()
+                .map(VisitCalendarEntries::toEntry)
+                .toList();
+    }
+
+    private static VisitCalendarEntry toEntry(KeyValueEntity values) {
+        return new VisitCalendarEntry(
+                values.getValue("id"),
+                values.getValue("version"),
+                values.getValue("visitStart"),
+                values.getValue("visitEnd"),
+                VisitType.fromId(values.getValue("type")),
+                values.getValue("petName"));
+    }
+
+    /**
+     * Every change invalidates the month of the visit, as the version of the visit is part of the entries.
+     * A deleted visit invalidates the month it started in, or the whole cache if its start is not known.
+     */
+    @TransactionalEventListener
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onVisitChanged(final EntityChangedEvent<Visit> event) {
+        AttributeChanges changes = event.getChanges();
+        if (event.getType() == EntityChangedEvent.Type.DELETED) {
+            LocalDateTime visitStart = changes.getOldValue("visitStart");
+            if (visitStart != null) {
+                invalidate(visitStart);
+            } else {
+                entriesByMonth.clear();
+            }
+            return;
+        }
+
+        if (changes.isChanged("visitStart")) {
+            invalidate(changes.getOldValue("visitStart"));
+        }
+        dataManager.unconstrained()
+                .loadValue("select e.visitStart from petclinic_Visit e where e.id = :id", LocalDateTime.class)
+                .parameter("id", event.getEntityId().getValue())
+                .hint(PersistenceHints.SOFT_DELETION, false)
+                .optional()
+                .ifPresent(this::invalidate);
+    }
+
+    /**
+     * Visits inserted without entity events invalidate the months they start in, or the whole cache if the inserted
+     * visits are not known.
+     */
+    @EventListener
+    public void onVisitsBulkInserted(final VisitsBulkInsertedEvent event) {
+        if (event.visits() == null) {
+            entriesByMonth.clear();
+            return;
+        }
+        event.visits().forEach(visit -> invalidate(visit.visitStart()));
+    }
+
+    /**
+     * Pet names are part of all entries, so a renamed pet invalidates the whole cache.
+     */
+    @TransactionalEventListener
+    public void onPetChanged(final EntityChangedEvent<Pet> event) {
+        if (event.getType() == EntityChangedEvent.Type.UPDATED && event.getChanges().isChanged("name")) {
+            entriesByMonth.clear();
+        }
+    }
+
+    private void invalidate(@Nullable LocalDateTime visitStart) {
+        if (visitStart == null) {
+            return;
+        }
+        entriesByMonth.remove(YearMonth.from(visitStart));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+}
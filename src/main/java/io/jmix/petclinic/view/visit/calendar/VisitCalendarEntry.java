@@ -0,0 +1,19 @@
+package io.jmix.petclinic.view.visit.calendar;
+
+import io.jmix.petclinic.entity.visit.Visit;
+import io.jmix.petclinic.entity.visit.VisitType;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Lightweight projection of a visit containing only what the calendar needs to display it.
+ */
+public record VisitCalendarEntry(UUID visitId, Integer version, LocalDateTime visitStart, LocalDateTime visitEnd,
+                                 VisitType type, String petName) {
+
+    public static VisitCalendarEntry of(Visit visit) {
+        return new VisitCalendarEntry(visit.getId(), visit.getVersion(), visit.getVisitStart(), visit.getVisitEnd(),
+                visit.getType(), visit.getPet().getName());
+    }
+}
@@ -0,0 +1,11 @@
+package io.jmix.petclinic.view.visit.calendar;
+
+import io.jmix.petclinic.entity.visit.VisitType;
+
+import java.time.LocalDate;
+
+/**
+ * Amount of visits of one type that start on one day.
+ */
+public record VisitDayCount(LocalDate day, VisitType type, long amount) {
+}
@@ -0,0 +1,71 @@
+package io.jmix.petclinic.visit;
+
+import io.jmix.petclinic.entity.User;
+import io.jmix.petclinic.entity.visit.AssignNurseToVisitAutomaticallyEventListener;
+import io.jmix.petclinic.entity.visit.Visit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns nurses to the visits of one day in memory, following the same rule as
+ * {@link AssignNurseToVisitAutomaticallyEventListener}: a visit without a nurse gets the nurse with the fewest
+ * booked minutes on that day among the nurses that have no overlapping visit. Visits that already have a nurse keep it.
+ */
+class DailyNurseAssignment {
+
+    private final List<User> nurses;
+    private final Map<User, List<Visit>> visitsPerNurse = new HashMap<>();
+    private final Map<User, Long> bookedMinutesPerNurse = new HashMap<>();
+
+    DailyNurseAssignment(List<User> nurses) {
+        this.nurses = nurses;
+    }
+
+    /**
+     * Assigns nurses to all visits without a nurse. The visits are expected to be the complete list of
+     * visits of one day in creation order.
+     */
+    static void assignNurses(List<Visit> visitsOfDay, List<User> nurses) {
+        DailyNurseAssignment assignment = new DailyNurseAssignment(nurses);
+
+        visitsOfDay.stream()
+                .filter(visit -> visit.getAssignedNurse() != null)
+                .forEach(assignment::book);
+
+        visitsOfDay.stream()
+                .filter(visit -> visit.getAssignedNurse() == null)
+                .forEach(assignment::assignAvailableNurse);
+    }
+
+    private void assignAvailableNurse(Visit visit) {
+        nurses.stream()
+                .filter(nurse -> isAvailable(nurse, visit))
+                .min(Comparator.comparingLong(nurse -> bookedMinutesPerNurse.getOrDefault(nurse, 0L)))
+                .ifPresent(nurse -> {
+                    visit.setAssignedNurse(nurse);
+                    book(visit);
+                });
+    }
+
+    private void book(Visit visit) {
+        visitsPerNurse.computeIfAbsent(visit.getAssignedNurse(), nurse -> new ArrayList<>())
+                .add(visit);
+        bookedMinutesPerNurse.merge(visit.getAssignedNurse(),
+                Duration.between(visit.getVisitStart(), visit.getVisitEnd()).toMinutes(), Long::sum);
+    }
+
+    private boolean isAvailable(User nurse, Visit visit) {
+        return visitsPerNurse.getOrDefault(nurse, List.of()).stream()
+                .noneMatch(bookedVisit -> overlaps(bookedVisit, visit));
+    }
+
+    private static boolean overlaps(Visit visit, Visit other) {
+        return visit.getVisitStart().isBefore(other.getVisitEnd())
+                && visit.getVisitEnd().isAfter(other.getVisitStart());
+    }
+}
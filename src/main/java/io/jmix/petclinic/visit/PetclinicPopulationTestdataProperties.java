@@ -0,0 +1,83 @@
+package io.jmix.petclinic.visit;
+
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Size of the synthetic population (owners, pets, pet types, veterinarians and nurses) that is generated
+ * in addition to the data of {@code petclinic-testdata.sql}. All amounts default to zero, so no population
+ * is generated unless configured (see {@code application-synthetic-data.properties}).
+ */
+@Configuration
+@ConfigurationProperties(prefix = "petclinic.testdata.population")
+@Validated
+public class PetclinicPopulationTestdataProperties {
+
+    @PositiveOrZero
+    private int owners;
+    @Positive
+    private int maxPetsPerOwner = 1;
+    @Positive
+    private double petsPerOwnerSkew = 1;
+    @PositiveOrZero
+    private int petTypes;
+    @PositiveOrZero
+    private int veterinarians;
+    @PositiveOrZero
+    private int nurses;
+
+    public void setOwners(int owners) {
+        this.owners = owners;
+    }
+
+    public void setMaxPetsPerOwner(int maxPetsPerOwner) {
+        this.maxPetsPerOwner = maxPetsPerOwner;
+    }
+
+    public void setPetsPerOwnerSkew(double petsPerOwnerSkew) {
+        this.petsPerOwnerSkew = petsPerOwnerSkew;
+    }
+
+    public void setPetTypes(int petTypes) {
+        this.petTypes = petTypes;
+    }
+
+    public void setVeterinarians(int veterinarians) {
+        this.veterinarians = veterinarians;
+    }
+
+    public void setNurses(int nurses) {
+        this.nurses = nurses;
+    }
+
+    public int getOwners() {
+        return owners;
+    }
+
+    public int getMaxPetsPerOwner() {
+        return maxPetsPerOwner;
+    }
+
+    /**
+     * Skew of the amount of pets per owner. With {@code 1} the amount is evenly distributed between one and
+     * {@link #getMaxPetsPerOwner()}, higher values lead to most owners having few pets and some having many.
+     */
+    public double getPetsPerOwnerSkew() {
+        return petsPerOwnerSkew;
+    }
+
+    public int getPetTypes() {
+        return petTypes;
+    }
+
+    public int getVeterinarians() {
+        return veterinarians;
+    }
+
+    public int getNurses() {
+        return nurses;
+    }
+}
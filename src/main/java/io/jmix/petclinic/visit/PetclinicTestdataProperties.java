@@ -1,11 +1,15 @@
 package io.jmix.petclinic.visit;
 
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.bind.ConstructorBinding;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.Nullable;
 import org.springframework.validation.annotation.Validated;
 
+import java.nio.file.Path;
 import java.util.List;
 
 @Configuration
@@ -19,6 +23,25 @@ public class PetclinicTestdataProperties {
     private Integer visitStartAmountFutureDays;
     @NotNull
     private Integer amountPerDay;
+    @NotNull
+    @Positive
+    private Integer batchSize;
+
+    private boolean bulkLoad;
+
+    private boolean incremental;
+
+    @PositiveOrZero
+    private double busyDayProbability;
+    @Positive
+    private double busyDayFactor = 1;
+
+    private Long seed;
+
+    private Path snapshotFile;
+
+    @Positive
+    private Integer parallelism;
 
     @NotNull
     private List<String> descriptionOptions;
@@ -35,6 +58,38 @@ public class PetclinicTestdataProperties {
         this.amountPerDay = amountPerDay;
     }
 
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public void setBusyDayProbability(double busyDayProbability) {
+        this.busyDayProbability = busyDayProbability;
+    }
+
+    public void setBusyDayFactor(double busyDayFactor) {
+        this.busyDayFactor = busyDayFactor;
+    }
+
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    public void setSnapshotFile(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public void setParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+
     public void setDescriptionOptions(List<String> descriptionOptions) {
         this.descriptionOptions = descriptionOptions;
     }
@@ -51,6 +106,67 @@ public class PetclinicTestdataProperties {
         return amountPerDay;
     }
 
+    /**
+     * Amount of visits that are written to the database within one transaction during test data generation.
+     */
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Whether the visits are inserted via JDBC batches instead of the {@link io.jmix.core.DataManager}.
+     * Entity listeners are not executed in this mode.
+     */
+    public boolean isBulkLoad() {
+        return bulkLoad;
+    }
+
+    /**
+     * Whether the missing future days are generated if visits already exist. Otherwise, no visits are generated
+     * as soon as the database contains any visit.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Probability of a day being a busy day, which has {@link #getBusyDayFactor()} times the regular amount of visits.
+     */
+    public double getBusyDayProbability() {
+        return busyDayProbability;
+    }
+
+    public double getBusyDayFactor() {
+        return busyDayFactor;
+    }
+
+    /**
+     * Master seed for the visit generation. The same seed always produces the same data set. If not set,
+     * a random seed is used (and logged).
+     */
+    @Nullable
+    public Long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Snapshot file of the visits. If it exists, the visits are restored from it instead of being generated.
+     * Otherwise, the generated visits are exported to it. If not set, no snapshot is used.
+     */
+    @Nullable
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Amount of threads that generate the visits of different days in parallel. If not set,
+     * the amount of available processors is used.
+     */
+    @Nullable
+    public Integer getParallelism() {
+        return parallelism;
+    }
+
     public List<String> getDescriptionOptions() {
         return descriptionOptions;
     }
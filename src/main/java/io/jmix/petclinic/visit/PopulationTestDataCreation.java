@@ -0,0 +1,323 @@
+package io.jmix.petclinic.visit;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.EntitySet;
+import io.jmix.core.PersistenceHints;
+import io.jmix.core.SaveContext;
+import io.jmix.core.Sort;
+import io.jmix.core.TimeSource;
+import io.jmix.petclinic.entity.User;
+import io.jmix.petclinic.entity.owner.Owner;
+import io.jmix.petclinic.entity.pet.HealthStatus;
+import io.jmix.petclinic.entity.pet.Pet;
+import io.jmix.petclinic.entity.pet.PetType;
+import io.jmix.petclinic.entity.veterinarian.Specialty;
+import io.jmix.petclinic.entity.veterinarian.Veterinarian;
+import io.jmix.petclinic.security.NurseRole;
+import io.jmix.petclinic.security.UiMinimalRole;
+import io.jmix.security.role.assignment.RoleAssignmentRoleType;
+import io.jmix.securitydata.entity.RoleAssignmentEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates a synthetic population of pet types, veterinarians, nurses, owners and pets, on top of which
+ * {@link VisitTestDataCreation} generates the visits. The amounts are configured via
+ * {@link PetclinicPopulationTestdataProperties}.
+ * <p>
+ * The amount of pets per owner is skewed, so that most owners have few pets and some owners have many.
+ * <p>
+ * Every generated entity has a number, which is part of its name (e.g. {@code nurse-3}). Only the numbers up to
+ * the configured amount that do not exist yet are generated, so that a re-run or a raised amount adds the missing
+ * entities only. The data of petclinic-testdata.sql is not counted.
+ * <p>
+ * With a configured seed, the population including its IDs is the same on every run, so that a visit snapshot
+ * (see {@link VisitSnapshot}) can be restored into a new database after the population was generated. Every
+ * number has its own random generator, so an entity is the same regardless of which other entities are generated.
+ */
+@Component("petclinic_PopulationTestDataCreation")
+public class PopulationTestDataCreation {
+    private static final Logger log = LoggerFactory.getLogger(PopulationTestDataCreation.class);
+
+    private static final List<String> FIRST_NAMES = List.of(
+            "Ash", "Misty", "Brock", "Gary", "May", "Dawn", "Serena", "Clemont", "Iris", "Cilan",
+            "Lillie", "Kiawe", "Lana", "Mallow", "Sophocles", "Gladion", "Leon", "Hop", "Nessa", "Raihan"
+    );
+    private static final List<String> LAST_NAMES = List.of(
+            "Ketchum", "Waterflower", "Harrison", "Maple", "Berlitz", "Yvonne", "Meyer", "Stone", "Birch", "Hale"
+    );
+    private static final List<String> CITIES = List.of(
+            "Pallet Town", "Viridian City", "Pewter City", "Cerulean City", "Vermilion City",
+            "Lavender Town", "Celadon City", "Fuchsia City", "Saffron City", "Cinnabar Island"
+    );
+    private static final List<String> STREETS = List.of(
+            "Route", "Main Street", "Oak Avenue", "Harbor Road", "Forest Path", "Mountain Pass"
+    );
+    private static final List<String> PET_NAME_PREFIXES = List.of(
+            "Pika", "Char", "Bulba", "Squir", "Jiggly", "Eev", "Snor", "Gen", "Luc", "Tog"
+    );
+    private static final List<String> PET_NAME_SUFFIXES = List.of(
+            "chu", "mander", "saur", "tle", "puff", "ee", "lax", "gar", "ario", "epi"
+    );
+
+    /**
+     * Role for using filters, assigned to the nurses of {@code petclinic-testdata.sql} as well.
+     */
+    private static final String FLOWUI_FILTER_ROLE_CODE = "flowui-filter";
+
+    private static final long NUMBER_SEED_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private static final Pattern PET_TYPE_NAME = Pattern.compile("Type (\\d+)");
+    private static final Pattern VETERINARIAN_LAST_NAME = Pattern.compile(".+ (\\d+)");
+    private static final Pattern NURSE_USERNAME = Pattern.compile("nurse-(\\d+)");
+    private static final Pattern OWNER_EMAIL = Pattern.compile("owner-(\\d+)@example\\.com");
+
+    private final PetclinicPopulationTestdataProperties populationProperties;
+    private final PetclinicTestdataProperties petclinicTestdataProperties;
+    private final DataManager dataManager;
+    private final TimeSource timeSource;
+
+    public PopulationTestDataCreation(
+            PetclinicPopulationTestdataProperties populationProperties,
+            PetclinicTestdataProperties petclinicTestdataProperties,
+            DataManager dataManager,
+            TimeSource timeSource) {
+        this.populationProperties = populationProperties;
+        this.petclinicTestdataProperties = petclinicTestdataProperties;
+        this.dataManager = dataManager;
+        this.timeSource = timeSource;
+    }
+
+    public void createData() {
+
+        Long seed = petclinicTestdataProperties.getSeed();
+        SplittableRandom random = new SplittableRandom(seed != null ? seed : new SplittableRandom().nextLong());
+        // one seed per kind, so that the data of a kind does not depend on whether the other kinds are generated
+        long petTypeSeed = random.nextLong();
+        long veterinarianSeed = random.nextLong();
+        long nurseSeed = random.nextLong();
+        long ownerSeed = random.nextLong();
+
+        List<Integer> petTypeNumbers = missingNumbers(
+                "select e.name from petclinic_PetType e where e.name like 'Type %'",
+                PET_TYPE_NAME, populationProperties.getPetTypes());
+        if (!petTypeNumbers.isEmpty()) {
+            createPetTypes(petTypeNumbers, petTypeSeed);
+            log.info("{} Pet Types created", petTypeNumbers.size());
+        }
+
+        List<Integer> veterinarianNumbers = missingNumbers(
+                "select e.lastName from petclinic_Veterinarian e where e.lastName like '% %'",
+                VETERINARIAN_LAST_NAME, populationProperties.getVeterinarians());
+        if (!veterinarianNumbers.isEmpty()) {
+            createVeterinarians(veterinarianNumbers, veterinarianSeed);
+            log.info("{} Veterinarians created", veterinarianNumbers.size());
+        }
+
+        List<Integer> nurseNumbers = missingNumbers(
+                "select e.username from User e where e.username like 'nurse-%'",
+                NURSE_USERNAME, populationProperties.getNurses());
+        if (!nurseNumbers.isEmpty()) {
+            createNurses(nurseNumbers, nurseSeed);
+            log.info("{} Nurses created", nurseNumbers.size());
+        }
+
+        List<Integer> ownerNumbers = missingNumbers(
+                "select e.email from petclinic_Owner e where e.email like 'owner-%@example.com'",
+                OWNER_EMAIL, populationProperties.getOwners());
+        if (!ownerNumbers.isEmpty()) {
+            int petCount = createOwnersWithPets(ownerNumbers, loadPetTypes(), ownerSeed);
+            log.info("{} Owners with {} Pets created", ownerNumbers.size(), petCount);
+        }
+    }
+
+    /**
+     * Loads the names of the generated entities including the soft deleted ones, whose IDs are taken as well.
+     *
+     * @return the numbers up to the amount that are not used by a generated entity yet
+     */
+    private List<Integer> missingNumbers(String namesQuery, Pattern namePattern, int amount) {
+        if (amount <= 0) {
+            return List.of();
+        }
+
+        Set<Integer> existingNumbers = dataManager.loadValue(namesQuery, String.class)
+                .hint(PersistenceHints.SOFT_DELETION, false)
+                .list()
+                .stream()
+                .map(namePattern::matcher)
+                .filter(Matcher::matches)
+                .map(matcher -> Integer.valueOf(matcher.group(1)))
+                .collect(Collectors.toSet());
+
+        return IntStream.rangeClosed(1, amount)
+                .filter(number -> !existingNumbers.contains(number))
+                .boxed()
+                .toList();
+    }
+
+    private static RandomGenerator randomForNumber(long kindSeed, int number) {
+        return new SplittableRandom(kindSeed ^ number * NUMBER_SEED_GAMMA);
+    }
+
+    private void createPetTypes(List<Integer> numbers, long seed) {
+        List<PetType> petTypes = new ArrayList<>();
+        for (int i : numbers) {
+            RandomGenerator random = randomForNumber(seed, i);
+            PetType petType = dataManager.create(PetType.class);
+            petType.setId(VisitTestDataCreation.randomUuid(random));
+            petType.setName("Type %d".formatted(i));
+            petType.setColor("%06X".formatted(random.nextInt(0x1000000)));
+            petTypes.add(petType);
+        }
+        saveInBatches(PetType.class, petTypes);
+    }
+
+    private List<PetType> loadPetTypes() {
+        return dataManager.load(PetType.class).all().sort(Sort.by("name")).list();
+    }
+
+    private void createVeterinarians(List<Integer> numbers, long seed) {
+        List<Specialty> specialties = dataManager.load(Specialty.class).all().sort(Sort.by("name")).list();
+
+        List<Veterinarian> veterinarians = new ArrayList<>();
+        for (int i : numbers) {
+            RandomGenerator random = randomForNumber(seed, i);
+            Veterinarian veterinarian = dataManager.create(Veterinarian.class);
+            veterinarian.setId(VisitTestDataCreation.randomUuid(random));
+            veterinarian.setFirstName(randomOfList(FIRST_NAMES, random));
+            veterinarian.setLastName("%s %d".formatted(randomOfList(LAST_NAMES, random), i));
+            if (!specialties.isEmpty()) {
+                veterinarian.setSpecialties(List.of(randomOfList(specialties, random)));
+            }
+            veterinarians.add(veterinarian);
+        }
+        saveInBatches(Veterinarian.class, veterinarians);
+    }
+
+    private void createNurses(List<Integer> numbers, long seed) {
+        List<Object> nursesWithRoles = new ArrayList<>();
+        for (int i : numbers) {
+            User nurse = dataManager.create(User.class);
+            nurse.setId(VisitTestDataCreation.randomUuid(randomForNumber(seed, i)));
+            nurse.setUsername("nurse-%d".formatted(i));
+            nurse.setPassword("{noop}nurse");
+            nurse.setFirstName("Nurse");
+            nurse.setLastName(String.valueOf(i));
+            nursesWithRoles.add(nurse);
+            nursesWithRoles.add(resourceRoleAssignment(nurse, NurseRole.CODE));
+            nursesWithRoles.add(resourceRoleAssignment(nurse, UiMinimalRole.CODE));
+            nursesWithRoles.add(resourceRoleAssignment(nurse, FLOWUI_FILTER_ROLE_CODE));
+        }
+        saveInBatches(Object.class, nursesWithRoles);
+    }
+
+    private RoleAssignmentEntity resourceRoleAssignment(User user, String roleCode) {
+        RoleAssignmentEntity roleAssignment = dataManager.create(RoleAssignmentEntity.class);
+        roleAssignment.setUsername(user.getUsername());
+        roleAssignment.setRoleCode(roleCode);
+        roleAssignment.setRoleType(RoleAssignmentRoleType.RESOURCE);
+        return roleAssignment;
+    }
+
+    private int createOwnersWithPets(List<Integer> numbers, List<PetType> petTypes, long seed) {
+        int batchSize = petclinicTestdataProperties.getBatchSize();
+        List<Object> batch = new ArrayList<>(batchSize);
+        int petCount = 0;
+
+        for (int i : numbers) {
+            RandomGenerator random = randomForNumber(seed, i);
+            Owner owner = createOwner(i, random);
+            batch.add(owner);
+
+            int amountOfPets = amountOfPets(random);
+            for (int j = 1; j <= amountOfPets; j++) {
+                // at most max-pets-per-owner pets per owner, so the pet number is unique
+                int petNumber = (i - 1) * populationProperties.getMaxPetsPerOwner() + j;
+                batch.add(createPet(owner, petTypes, petNumber, random));
+            }
+            petCount += amountOfPets;
+
+            if (batch.size() >= batchSize) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            commit(batch);
+        }
+
+        return petCount;
+    }
+
+    private Owner createOwner(int number, RandomGenerator random) {
+        Owner owner = dataManager.create(Owner.class);
+        owner.setId(VisitTestDataCreation.randomUuid(random));
+        owner.setFirstName(randomOfList(FIRST_NAMES, random));
+        owner.setLastName(randomOfList(LAST_NAMES, random));
+        owner.setCity(randomOfList(CITIES, random));
+        owner.setAddress("%s %d".formatted(randomOfList(STREETS, random), random.nextInt(1, 200)));
+        owner.setEmail("owner-%d@example.com".formatted(number));
+        owner.setTelephone("0049%010d".formatted(random.nextLong(10_000_000_000L)));
+        return owner;
+    }
+
+    private Pet createPet(Owner owner, List<PetType> petTypes, int number, RandomGenerator random) {
+        Pet pet = dataManager.create(Pet.class);
+        pet.setId(VisitTestDataCreation.randomUuid(random));
+        pet.setName(randomOfList(PET_NAME_PREFIXES, random) + randomOfList(PET_NAME_SUFFIXES, random));
+        pet.setIdentificationNumber("S-%07d".formatted(number));
+        pet.setBirthdate(timeSource.now().toLocalDate().minusDays(random.nextInt(30, 15 * 365)));
+        pet.setHealthStatus(HealthStatus.UNKNOWN);
+        pet.setType(randomOfList(petTypes, random));
+        pet.setOwner(owner);
+        return pet;
+    }
+
+    /**
+     * Power-law distributed amount of pets between one and the configured maximum.
+     */
+    private int amountOfPets(RandomGenerator random) {
+        double skewed = Math.pow(random.nextDouble(), populationProperties.getPetsPerOwnerSkew());
+        return 1 + (int) (skewed * populationProperties.getMaxPetsPerOwner());
+    }
+
+    /**
+     * @return the saved instances, which can be referenced by entities that are saved later
+     */
+    private <T> List<T> saveInBatches(Class<T> entityClass, List<? extends T> entities) {
+        int batchSize = petclinicTestdataProperties.getBatchSize();
+        List<T> saved = new ArrayList<>(entities.size());
+        for (int from = 0; from < entities.size(); from += batchSize) {
+            EntitySet savedBatch = commit(entities.subList(from, Math.min(from + batchSize, entities.size())));
+            savedBatch.stream()
+                    .filter(entityClass::isInstance)
+                    .map(entityClass::cast)
+                    .forEach(saved::add);
+        }
+        return saved;
+    }
+
+    private EntitySet commit(List<?> entities) {
+        SaveContext saveContext = new SaveContext()
+                .setJoinTransaction(false);
+        entities.forEach(saveContext::saving);
+        return dataManager.save(saveContext);
+    }
+
+    private static <T> T randomOfList(List<T> list, RandomGenerator random) {
+        return list.get(random.nextInt(list.size()));
+    }
+}
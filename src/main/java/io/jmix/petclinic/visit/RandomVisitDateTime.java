@@ -8,6 +8,7 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 import static java.util.Arrays.asList;
 
@@ -16,24 +17,38 @@ public class RandomVisitDateTime {
 
 
     public VisitEventRange randomVisitEventRange(LocalDate date) {
+        return randomVisitEventRange(date, random());
+    }
+
+    /**
+     * Calculates a random visit range for the given date. All random draws are taken from the given generator,
+     * so that the same generator state always produces the same range.
+     */
+    public VisitEventRange randomVisitEventRange(LocalDate date, RandomGenerator random) {
 
-        DayOfWeek dayOfWeek = date.getDayOfWeek();
-        if (dayOfWeek.equals(DayOfWeek.SUNDAY)) {
+        if (!isOpeningDay(date)) {
             return VisitEventRange.empty();
         }
-        else if (dayOfWeek.equals(DayOfWeek.SATURDAY)) {
-            if (oneInNTimes(100)) {
+        else if (date.getDayOfWeek().equals(DayOfWeek.SATURDAY)) {
+            if (oneInNTimes(100, random)) {
                 return VisitEventRange.empty();
             }
         }
 
-        LocalDateTime visitStart = date.atTime(between(7,16));
+        LocalDateTime visitStart = date.atTime(between(7,16, random));
+
+        return VisitEventRange.of(visitStart, visitStart.plusMinutes(randomVisitLength(random)));
+    }
 
-        return VisitEventRange.of(visitStart, visitStart.plusMinutes(randomVisitLength()));
+    /**
+     * @return false for days on which no visits take place at all
+     */
+    public boolean isOpeningDay(LocalDate date) {
+        return !date.getDayOfWeek().equals(DayOfWeek.SUNDAY);
     }
 
-    private boolean oneInNTimes(int n) {
-        int randomOf100 = random().nextInt(n) + 1;
+    private boolean oneInNTimes(int n, RandomGenerator random) {
+        int randomOf100 = random.nextInt(n) + 1;
         return randomOf100 != n;
     }
 
@@ -41,18 +56,22 @@ public class RandomVisitDateTime {
         return new Random();
     }
 
-    private long randomVisitLength() {
-        return (random().nextInt(3) + 1) * 30;
+    private long randomVisitLength(RandomGenerator random) {
+        return (random.nextInt(3) + 1) * 30;
     }
 
     public static LocalTime between(int startTime, int endTime) {
-        int hour = random().nextInt(endTime - startTime) + startTime;
+        return between(startTime, endTime, random());
+    }
+
+    public static LocalTime between(int startTime, int endTime, RandomGenerator random) {
+        int hour = random.nextInt(endTime - startTime) + startTime;
 
-        Integer minute = randomOfList(asList(0, 15, 30, 45));
+        Integer minute = randomOfList(asList(0, 15, 30, 45), random);
         return LocalTime.of(hour, minute);
     }
 
-    private static <T> T randomOfList(List<T> list) {
-        return list.get(random().nextInt(list.size()));
+    private static <T> T randomOfList(List<T> list, RandomGenerator random) {
+        return list.get(random.nextInt(list.size()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+package io.jmix.petclinic.visit;
+
+import io.jmix.core.TimeSource;
+import io.jmix.core.security.CurrentAuthentication;
+import io.jmix.petclinic.entity.visit.Visit;
+import io.jmix.petclinic.entity.visit.VisitNumberAllocator;
+import io.jmix.petclinic.entity.visit.VisitNumberGeneratorEntityListener;
+import io.jmix.petclinic.entity.visit.VisitsBulkInsertedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes visits directly via JDBC batch inserts. Used for loading large amounts of test data, where saving
+ * every visit through the {@link io.jmix.core.DataManager} is too slow.
+ * <p>
+ * Entity listeners are not executed for the inserted rows. Instead, the invariants they enforce are established here:
+ * the visit numbers are taken from the same {@link VisitNumberAllocator} that
+ * {@link VisitNumberGeneratorEntityListener} uses, and the nurses have to be assigned by the caller (see {@link DailyNurseAssignment}).
+ * After the commit, a {@link VisitsBulkInsertedEvent} is published for the components that keep visits in memory.
+ */
+@Component("petclinic_VisitBulkLoader")
+public class VisitBulkLoader {
+
+    private static final String INSERT_VISIT = """
+            insert into PETCLINIC_VISIT
+            (ID, VERSION, VISIT_NUMBER, PAID, PET_ID, TYPE_, VISIT_START, VISIT_END, ASSIGNED_NURSE_ID,
+             DESCRIPTION, TREATMENT_STATUS, CREATED_BY, CREATED_DATE, LAST_MODIFIED_BY, LAST_MODIFIED_DATE)
+            values (?, 1, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VisitNumberAllocator visitNumberAllocator;
+    private final TimeSource timeSource;
+    private final CurrentAuthentication currentAuthentication;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public VisitBulkLoader(
+            DataSource dataSource,
+            TransactionTemplate transactionTemplate,
+            VisitNumberAllocator visitNumberAllocator,
+            TimeSource timeSource,
+            CurrentAuthentication currentAuthentication,
+            ApplicationEventPublisher applicationEventPublisher) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = transactionTemplate;
+        this.visitNumberAllocator = visitNumberAllocator;
+        this.timeSource = timeSource;
+        this.currentAuthentication = currentAuthentication;
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    /**
+     * Inserts the visits in one transaction using one JDBC batch.
+     *
+     * @return amount of inserted visits
+     */
+    public int insert(List<Visit> visits) {
+        if (visits.isEmpty()) {
+            return 0;
+        }
+
+        String username = currentAuthentication.getUser().getUsername();
+        OffsetDateTime now = timeSource.now().toOffsetDateTime();
+
+        List<Object[]> rows = new ArrayList<>(visits.size());
+        for (Visit visit : visits) {
+            visit.setVisitNumber(visitNumber(visit, visitNumberAllocator.nextValue()));
+            rows.add(new Object[]{
+                    visit.getId(),
+                    visit.getVisitNumber(),
+                    Boolean.TRUE.equals(visit.getPaid()),
+                    visit.getPet().getId(),
+                    visit.getType().getId(),
+                    visit.getVisitStart(),
+                    visit.getVisitEnd(),
+                    visit.getAssignedNurse() != null ? visit.getAssignedNurse().getId() : null,
+                    visit.getDescription(),
+                    visit.getTreatmentStatus() != null ? visit.getTreatmentStatus().getId() : null,
+                    username,
+                    now,
+                    username,
+                    now
+            });
+        }
+
+        transactionTemplate.executeWithoutResult(status -> insertRows(rows));
+        applicationEventPublisher.publishEvent(VisitsBulkInsertedEvent.of(visits));
+
+        return visits.size();
+    }
+
+    /**
+     * Inserts the rows in one JDBC batch within the current transaction. The caller has to publish
+     * a {@link VisitsBulkInsertedEvent} after the commit.
+     * The values of a row are in the order ID, VISIT_NUMBER, PAID, PET_ID, TYPE_, VISIT_START, VISIT_END,
+     * ASSIGNED_NURSE_ID, DESCRIPTION, TREATMENT_STATUS, CREATED_BY, CREATED_DATE, LAST_MODIFIED_BY, LAST_MODIFIED_DATE.
+     */
+    void insertRows(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate(INSERT_VISIT, rows);
+    }
+
+    /**
+     * Same format as in {@link VisitNumberGeneratorEntityListener}.
+     */
+    private static String visitNumber(Visit visit, long sequenceNumber) {
+        return "V-%s-%06d".formatted(visit.getVisitStart().getYear(), sequenceNumber);
+    }
+}
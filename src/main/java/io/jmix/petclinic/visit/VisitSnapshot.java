@@ -0,0 +1,308 @@
+package io.jmix.petclinic.visit;
+
+import io.jmix.core.TimeSource;
+import io.jmix.core.security.CurrentAuthentication;
+import io.jmix.petclinic.entity.visit.VisitNumberAllocator;
+import io.jmix.petclinic.entity.visit.VisitsBulkInsertedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the visits to a compact binary snapshot file and restores them from it. Both directions stream the rows,
+ * so the snapshot is never held in memory as a whole.
+ * <p>
+ * The visit dates are stored relative to the day of the export and shifted by whole weeks towards the current day
+ * on restore, so that the restored data looks current and the visits stay on their weekday. The treatment status
+ * and the year in the visit number are recalculated from the shifted visit start.
+ * <p>
+ * The snapshot references pets and nurses by ID, so it can only be restored into a database with the same master
+ * data. The synthetic population of {@link PopulationTestDataCreation} has the same IDs on every run with the same
+ * seed and amounts.
+ */
+@Component("petclinic_VisitSnapshot")
+public class VisitSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(VisitSnapshot.class);
+
+    private static final int MAGIC = 0x50435653;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String SELECT_VISITS = """
+            select ID, VISIT_NUMBER, PAID, PET_ID, TYPE_, VISIT_START, VISIT_END, ASSIGNED_NURSE_ID,
+                   DESCRIPTION, TREATMENT_STATUS
+            from PETCLINIC_VISIT
+            where DELETED_DATE is null""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VisitBulkLoader visitBulkLoader;
+    private final VisitNumberAllocator visitNumberAllocator;
+    private final TimeSource timeSource;
+    private final CurrentAuthentication currentAuthentication;
+    private final PetclinicTestdataProperties petclinicTestdataProperties;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public VisitSnapshot(
+            DataSource dataSource,
+            TransactionTemplate transactionTemplate,
+            VisitBulkLoader visitBulkLoader,
+            VisitNumberAllocator visitNumberAllocator,
+            TimeSource timeSource,
+            CurrentAuthentication currentAuthentication,
+            PetclinicTestdataProperties petclinicTestdataProperties,
+            ApplicationEventPublisher applicationEventPublisher) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(petclinicTestdataProperties.getBatchSize());
+        this.transactionTemplate = transactionTemplate;
+        this.visitBulkLoader = visitBulkLoader;
+        this.visitNumberAllocator = visitNumberAllocator;
+        this.timeSource = timeSource;
+        this.currentAuthentication = currentAuthentication;
+        this.petclinicTestdataProperties = petclinicTestdataProperties;
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    /**
+     * Writes all visits to the given file. An existing file is replaced.
+     *
+     * @return amount of exported visits
+     */
+    public int export(Path file) {
+        return export(file, timeSource.now().toLocalDate());
+    }
+
+    int export(Path file, LocalDate referenceDate) {
+        int[] exported = {0};
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(referenceDate.toEpochDay());
+
+            jdbcTemplate.query(SELECT_VISITS, (ResultSet rs) -> {
+                try {
+                    out.writeBoolean(true);
+                    writeRow(out, rs);
+                    exported[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            out.writeBoolean(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write visit snapshot " + file, e);
+        }
+
+        log.info("{} Visits exported to snapshot {}", exported[0], file);
+        return exported[0];
+    }
+
+    /**
+     * Inserts the visits of the given snapshot in one transaction. The visit dates are shifted by the amount of days
+     * between the export and today, rounded to whole weeks. The visit number allocator is advanced behind
+     * the restored visit numbers.
+     *
+     * @return amount of restored visits
+     */
+    public int restore(Path file) {
+        return restore(file, timeSource.now().toLocalDate());
+    }
+
+    int restore(Path file, LocalDate today) {
+        Integer restored = transactionTemplate.execute(status -> {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(Files.newInputStream(file))))) {
+                return restore(in, today);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read visit snapshot " + file, e);
+            }
+        });
+
+        // the restored visits are streamed, so they are not known as a whole here
+        applicationEventPublisher.publishEvent(VisitsBulkInsertedEvent.unknownVisits());
+
+        log.info("{} Visits restored from snapshot {}", restored, file);
+        return restored != null ? restored : 0;
+    }
+
+    private int restore(DataInputStream in, LocalDate today) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported visit snapshot format");
+        }
+
+        LocalDate referenceDate = LocalDate.ofEpochDay(in.readLong());
+        long shiftInDays = shiftInWeeks(referenceDate, today) * 7;
+
+        String username = currentAuthentication.getUser().getUsername();
+        OffsetDateTime now = timeSource.now().toOffsetDateTime();
+        int batchSize = petclinicTestdataProperties.getBatchSize();
+
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        long maxSequenceNumber = 0;
+        int restored = 0;
+
+        while (in.readBoolean()) {
+            Object[] row = readRow(in, shiftInDays, today, username, now);
+            maxSequenceNumber = Math.max(maxSequenceNumber, sequenceNumberOf((String) row[1]));
+            batch.add(row);
+
+            if (batch.size() >= batchSize) {
+                visitBulkLoader.insertRows(batch);
+                restored += batch.size();
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            visitBulkLoader.insertRows(batch);
+            restored += batch.size();
+        }
+
+        visitNumberAllocator.advancePast(maxSequenceNumber);
+
+        return restored;
+    }
+
+    private static void writeRow(DataOutputStream out, ResultSet rs) throws IOException, SQLException {
+        writeUuid(out, rs.getObject("ID", UUID.class));
+        out.writeUTF(rs.getString("VISIT_NUMBER"));
+        out.writeBoolean(rs.getBoolean("PAID"));
+        writeUuid(out, rs.getObject("PET_ID", UUID.class));
+        out.writeUTF(rs.getString("TYPE_"));
+        writeDateTime(out, rs.getObject("VISIT_START", LocalDateTime.class));
+        writeDateTime(out, rs.getObject("VISIT_END", LocalDateTime.class));
+        writeNullableUuid(out, rs.getObject("ASSIGNED_NURSE_ID", UUID.class));
+        writeNullableString(out, rs.getString("DESCRIPTION"));
+        writeNullableString(out, rs.getString("TREATMENT_STATUS"));
+    }
+
+    private static Object[] readRow(DataInputStream in, long shiftInDays, LocalDate today,
+                                    String username, OffsetDateTime now) throws IOException {
+        UUID id = readUuid(in);
+        String visitNumber = in.readUTF();
+        boolean paid = in.readBoolean();
+        UUID petId = readUuid(in);
+        String type = in.readUTF();
+        LocalDateTime visitStart = shifted(readDateTime(in), shiftInDays);
+        LocalDateTime visitEnd = shifted(readDateTime(in), shiftInDays);
+        UUID assignedNurseId = readNullableUuid(in);
+        String description = readNullableString(in);
+        String treatmentStatus = readNullableString(in);
+
+        if (visitStart != null) {
+            visitNumber = "V-%s-%s".formatted(visitStart.getYear(),
+                    visitNumber.substring(visitNumber.lastIndexOf('-') + 1));
+            treatmentStatus = VisitTestDataCreation.treatmentStatusFor(visitStart.toLocalDate(), today).getId();
+        }
+
+        return new Object[]{
+                id,
+                visitNumber,
+                paid,
+                petId,
+                type,
+                visitStart,
+                visitEnd,
+                assignedNurseId,
+                description,
+                treatmentStatus,
+                username,
+                now,
+                username,
+                now
+        };
+    }
+
+    /**
+     * @return amount of whole weeks between the export and today, rounded to the nearest week
+     */
+    private static long shiftInWeeks(LocalDate referenceDate, LocalDate today) {
+        return Math.round((today.toEpochDay() - referenceDate.toEpochDay()) / 7.0);
+    }
+
+    private static long sequenceNumberOf(String visitNumber) {
+        try {
+            return Long.parseLong(visitNumber.substring(visitNumber.lastIndexOf('-') + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Nullable
+    private static LocalDateTime shifted(@Nullable LocalDateTime dateTime, long shiftInDays) {
+        return dateTime != null ? dateTime.plusDays(shiftInDays) : null;
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeNullableUuid(DataOutputStream out, @Nullable UUID uuid) throws IOException {
+        out.writeBoolean(uuid != null);
+        if (uuid != null) {
+            writeUuid(out, uuid);
+        }
+    }
+
+    @Nullable
+    private static UUID readNullableUuid(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readUuid(in) : null;
+    }
+
+    private static void writeDateTime(DataOutputStream out, @Nullable LocalDateTime dateTime) throws IOException {
+        out.writeBoolean(dateTime != null);
+        if (dateTime != null) {
+            out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    @Nullable
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        return in.readBoolean() ? LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC) : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
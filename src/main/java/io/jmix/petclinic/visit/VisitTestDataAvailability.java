@@ -0,0 +1,14 @@
+package io.jmix.petclinic.visit;
+
+import org.springframework.boot.availability.AvailabilityState;
+
+/**
+ * Availability of the visit test data. While the test data is generated, the views that need
+ * the visits refuse traffic, whereas the application as a whole is already ready.
+ */
+public enum VisitTestDataAvailability implements AvailabilityState {
+
+    ACCEPTING_TRAFFIC,
+
+    REFUSING_TRAFFIC
+}
@@ -1,11 +1,13 @@
 package io.jmix.petclinic.visit;
 
 import io.jmix.core.DataManager;
+import io.jmix.core.PersistenceHints;
 import io.jmix.core.SaveContext;
 import io.jmix.core.TimeSource;
 import io.jmix.petclinic.EmployeeRepository;
 import io.jmix.petclinic.entity.User;
 import io.jmix.petclinic.entity.pet.Pet;
+import io.jmix.petclinic.entity.visit.NurseAssignmentQueue;
 import io.jmix.petclinic.entity.visit.Visit;
 import io.jmix.petclinic.entity.visit.VisitTreatmentStatus;
 import io.jmix.petclinic.entity.visit.VisitType;
@@ -14,12 +16,22 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
-import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -27,71 +39,233 @@ import java.util.stream.Stream;
 public class VisitTestDataCreation {
     private static final Logger log = LoggerFactory.getLogger(VisitTestDataCreation.class);
 
+    /**
+     * Odd constant (golden ratio) to spread the seeds of consecutive days over the whole seed space. As it is odd,
+     * different days never get the same seed.
+     */
+    private static final long DAY_SEED_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Amount of days that are generated in parallel per worker thread before the visits are handed over to
+     * the batch commit. Bounds the amount of visits held in memory.
+     */
+    private static final int DAYS_PER_WORKER = 4;
+
+    private static final Duration NURSE_ASSIGNMENT_TIMEOUT = Duration.ofMinutes(10);
+
     protected final PetclinicTestdataProperties petclinicTestdataProperties;
     protected final TimeSource timeSource;
     protected final DataManager dataManager;
     protected final RandomVisitDateTime randomVisitDateTime;
     private final EmployeeRepository employeeRepository;
+    private final VisitBulkLoader visitBulkLoader;
+    private final VisitTestDataStatus visitTestDataStatus;
+    private final VisitSnapshot visitSnapshot;
+    private final NurseAssignmentQueue nurseAssignmentQueue;
 
     public VisitTestDataCreation(
             PetclinicTestdataProperties petclinicTestdataProperties,
             TimeSource timeSource,
             DataManager dataManager,
             RandomVisitDateTime randomVisitDateTime,
-            EmployeeRepository employeeRepository) {
+            EmployeeRepository employeeRepository,
+            VisitBulkLoader visitBulkLoader,
+            VisitTestDataStatus visitTestDataStatus,
+            VisitSnapshot visitSnapshot,
+            NurseAssignmentQueue nurseAssignmentQueue) {
         this.petclinicTestdataProperties = petclinicTestdataProperties;
         this.timeSource = timeSource;
         this.dataManager = dataManager;
         this.randomVisitDateTime = randomVisitDateTime;
         this.employeeRepository = employeeRepository;
+        this.visitBulkLoader = visitBulkLoader;
+        this.visitTestDataStatus = visitTestDataStatus;
+        this.visitSnapshot = visitSnapshot;
+        this.nurseAssignmentQueue = nurseAssignmentQueue;
     }
 
     public void createData() {
 
         if (visitsExists()) {
-            log.info("Visits found in DB. Visit Test data generation is skipped...");
+            if (petclinicTestdataProperties.isIncremental()) {
+                topUpFutureDays();
+            } else {
+                log.info("Visits found in DB. Visit Test data generation is skipped...");
+                visitTestDataStatus.skipped();
+            }
             return;
         }
 
-        log.info("No Visits found in the DB. Visit Test data will be created...");
+        if (restoredFromSnapshot()) {
+            return;
+        }
 
-        int visitCreatedCount = commit(createVisits());
+        long masterSeed = masterSeed();
+        log.info("No Visits found in the DB. Visit Test data will be created with seed {}...", masterSeed);
+
+        LocalDate today = timeSource.now().toLocalDate();
+        int visitCreatedCount = generate(Stream.concat(pastVisitDays(today), futureVisitDays(today)).toList(), masterSeed);
 
         String visitsCreatedMessage = String.format("%d Visits created", visitCreatedCount);
 
         log.info(visitsCreatedMessage);
 
+        exportSnapshot();
+    }
+
+    /**
+     * Generates the visits of the future days within {@code visitStartAmountFutureDays} after the last day with
+     * visits. Used to keep the window of future visits rolling forward on long-running instances.
+     * <p>
+     * Soft deleted visits count as well, as the visits of their day would be generated with the same IDs again.
+     * Days that cannot have visits (Sundays and days with an amount of zero) are left out, so that the top-up
+     * is skipped when the window is complete.
+     *
+     * @return amount of created visits
+     */
+    public int topUpFutureDays() {
+        return topUpFutureDays(timeSource.now().toLocalDate());
+    }
+
+    int topUpFutureDays(LocalDate today) {
+        List<VisitDay> futureDays = futureVisitDays(today).toList();
+        LocalDate lastDayWithVisits = lastDayWithVisits(today.plusDays(1), today.plusDays(futureDays.size() + 1L))
+                .orElse(today);
+
+        List<VisitDay> missingDays = futureDays.stream()
+                .filter(visitDay -> visitDay.date().isAfter(lastDayWithVisits))
+                .filter(this::canHaveVisits)
+                .toList();
+
+        if (missingDays.isEmpty()) {
+            log.info("No future days without Visits found. Visit Test data top-up is skipped...");
+            visitTestDataStatus.skipped();
+            return 0;
+        }
+
+        int visitCreatedCount = generate(missingDays, masterSeed());
+
+        log.info("{} Visits created for {} future days without Visits", visitCreatedCount, missingDays.size());
+
+        return visitCreatedCount;
+    }
+
+    private int generate(List<VisitDay> visitDays, long masterSeed) {
+        ForkJoinPool generationPool = new ForkJoinPool(parallelism());
+        try {
+            visitTestDataStatus.started(visitDays.size());
+
+            int visitCreatedCount = commitInBatches(createVisits(visitDays, masterSeed, generationPool));
+            awaitNurseAssignment();
+
+            visitTestDataStatus.completed();
+
+            return visitCreatedCount;
+        } catch (RuntimeException e) {
+            visitTestDataStatus.failed();
+            throw e;
+        } finally {
+            generationPool.shutdown();
+        }
+    }
+
+    /**
+     * Nurses of visits saved through the {@link DataManager} are assigned asynchronously. The generation is only
+     * finished, and the snapshot exported, after these assignments are done.
+     */
+    private void awaitNurseAssignment() {
+        if (petclinicTestdataProperties.isBulkLoad()) {
+            return;
+        }
+        try {
+            if (!nurseAssignmentQueue.awaitIdle(NURSE_ASSIGNMENT_TIMEOUT)) {
+                log.warn("Nurse assignment of the created Visits not finished after {}", NURSE_ASSIGNMENT_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the nurse assignment", e);
+        }
+    }
+
+    private boolean restoredFromSnapshot() {
+        Path snapshotFile = petclinicTestdataProperties.getSnapshotFile();
+        if (snapshotFile == null || !Files.isRegularFile(snapshotFile)) {
+            return false;
+        }
+
+        visitTestDataStatus.started(totalDays());
+        try {
+            int visitRestoredCount = visitSnapshot.restore(snapshotFile);
+            visitTestDataStatus.visitsWritten(visitRestoredCount);
+            visitTestDataStatus.daysDone(totalDays());
+            visitTestDataStatus.completed();
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Visits could not be restored from snapshot {}. Visit Test data will be generated instead.", snapshotFile, e);
+            return false;
+        }
+    }
+
+    private void exportSnapshot() {
+        Path snapshotFile = petclinicTestdataProperties.getSnapshotFile();
+        if (snapshotFile != null) {
+            try {
+                visitSnapshot.export(snapshotFile);
+            } catch (RuntimeException e) {
+                log.warn("Visits could not be exported to snapshot {}", snapshotFile, e);
+            }
+        }
+    }
+
+    /**
+     * Lazily generates the visits. The days are generated window by window in parallel on the given pool,
+     * so only the visits of the current window are held in memory until they are consumed.
+     * <p>
+     * Every day uses its own random generator derived from the master seed and the date of the day, so the result
+     * does not depend on the thread scheduling, and visits generated for different days on different runs, e.g. by
+     * a later top-up, never get the same IDs.
+     */
+    Stream<VisitWindow> createVisits(List<VisitDay> visitDays, long masterSeed, ForkJoinPool generationPool) {
+        final List<User> allNurses = sorted(employeeRepository.findAllNurses(), Comparator.comparing(User::getUsername));
+        final List<Pet> allPets = sorted(list(Pet.class), Comparator.comparing(Pet::getId));
+        final LocalDate today = timeSource.now().toLocalDate();
+
+        int windowSize = generationPool.getParallelism() * DAYS_PER_WORKER;
+
+        return IntStream.iterate(0, from -> from < visitDays.size(), from -> from + windowSize)
+                .mapToObj(from -> visitDays.subList(from, Math.min(from + windowSize, visitDays.size())))
+                .map(window -> new VisitWindow(window.size(),
+                        createVisitsForDays(window, today, masterSeed, allPets, allNurses, generationPool)));
     }
 
-    List<Visit> createVisits() {
-        final List<User> allNurses = employeeRepository.findAllNurses();
-        final List<Pet> allPets = list(Pet.class);
+    private List<Visit> createVisitsForDays(
+            List<VisitDay> visitDays,
+            LocalDate today,
+            long masterSeed,
+            List<Pet> possiblePets,
+            List<User> possibleNurses,
+            ForkJoinPool generationPool
+    ) {
+        return generationPool.submit(() -> visitDays.parallelStream()
+                        .map(visitDay -> createVisitsForDay(visitDay, today, masterSeed, possiblePets, possibleNurses))
+                        .flatMap(Collection::stream)
+                        .toList())
+                .join();
+    }
 
-        return Stream.concat(
-                createPastVisits(allPets, allNurses),
-                createFutureVisits(allPets, allNurses)
-        )
-                .collect(Collectors.toList());
+    private int totalDays() {
+        return petclinicTestdataProperties.getVisitStartAmountPastDays()
+                + petclinicTestdataProperties.getVisitStartAmountFutureDays();
     }
 
-    private Stream<Visit> createPastVisits(List<Pet> possiblePets, List<User> possibleNurses) {
+    private Stream<VisitDay> pastVisitDays(LocalDate today) {
         return IntStream.range(0, petclinicTestdataProperties.getVisitStartAmountPastDays())
-                .mapToObj(value -> timeSource.now().minusDays(value).toLocalDate())
-                .map(localDate -> createVisitsForDate(localDate, possiblePets, possibleNurses))
-                .flatMap(Collection::stream)
-                .filter(Objects::nonNull);
+                .mapToObj(i -> new VisitDay(today.minusDays(i), petclinicTestdataProperties.getAmountPerDay()));
     }
 
-    private Stream<Visit> createFutureVisits(List<Pet> possiblePets, List<User> possibleNurses) {
+    private Stream<VisitDay> futureVisitDays(LocalDate today) {
         return IntStream.range(1, petclinicTestdataProperties.getVisitStartAmountFutureDays() + 1)
-                .mapToObj(i -> createVisitsForDate(
-                        timeSource.now().plusDays(i).toLocalDate(),
-                        amountForFutureDate(i),
-                        possiblePets,
-                        possibleNurses
-                ))
-                .flatMap(Collection::stream)
-                .filter(Objects::nonNull);
+                .mapToObj(i -> new VisitDay(today.plusDays(i), amountForFutureDate(i)));
     }
 
     private int amountForFutureDate(int i) {
@@ -99,53 +273,146 @@ public class VisitTestDataCreation {
         return (int) ((double) (max - i) / max * petclinicTestdataProperties.getAmountPerDay());
     }
 
-    private List<Visit> createVisitsForDate(LocalDate localDate, List<Pet> possiblePets, List<User> possibleNurses) {
-        return IntStream.range(0, petclinicTestdataProperties.getAmountPerDay())
-                .mapToObj(i -> createVisit(localDate, possiblePets, possibleNurses))
-                .collect(Collectors.toList());
+    private List<Visit> createVisitsForDay(VisitDay visitDay, LocalDate today, long masterSeed, List<Pet> possiblePets, List<User> possibleNurses) {
+        RandomGenerator random = randomForDay(masterSeed, visitDay.date());
+        List<Visit> visits = IntStream.range(0, amountForDay(visitDay, random))
+                .mapToObj(i -> createVisit(visitDay.date(), today, possiblePets, possibleNurses, random))
+                .filter(Objects::nonNull)
+                .toList();
+
+        if (petclinicTestdataProperties.isBulkLoad()) {
+            // AssignNurseToVisitAutomaticallyEventListener is not executed for bulk loaded visits
+            DailyNurseAssignment.assignNurses(visits, possibleNurses);
+        }
+
+        return visits;
+    }
+
+    private int amountForDay(VisitDay visitDay, RandomGenerator random) {
+        double busyDayProbability = petclinicTestdataProperties.getBusyDayProbability();
+        // no random draw without busy days, so that the data set of a seed stays the same
+        if (busyDayProbability > 0 && random.nextDouble() < busyDayProbability) {
+            return (int) (visitDay.amount() * petclinicTestdataProperties.getBusyDayFactor());
+        }
+        return visitDay.amount();
     }
 
-    private List<Visit> createVisitsForDate(LocalDate localDate, int amount, List<Pet> possiblePets, List<User> possibleNurses) {
-        return IntStream.range(0, amount)
-                .mapToObj(i -> createVisit(localDate, possiblePets, possibleNurses))
-                .collect(Collectors.toList());
+    static RandomGenerator randomForDay(long masterSeed, LocalDate date) {
+        return new SplittableRandom(masterSeed ^ date.toEpochDay() * DAY_SEED_GAMMA);
     }
 
     private boolean visitsExists() {
-        return !list(Visit.class).isEmpty();
+        return !dataManager.loadValue("select e.id from petclinic_Visit e", UUID.class)
+                .maxResults(1)
+                .list()
+                .isEmpty();
+    }
+
+    /**
+     * @return last day between {@code from} (inclusive) and {@code to} (exclusive) with at least one visit,
+     * including soft deleted visits
+     */
+    private Optional<LocalDate> lastDayWithVisits(LocalDate from, LocalDate to) {
+        return dataManager.loadValue("""
+                        select max(e.visitStart) from petclinic_Visit e
+                        where e.visitStart >= :from and e.visitStart < :to""", LocalDateTime.class)
+                .parameter("from", from.atStartOfDay())
+                .parameter("to", to.atStartOfDay())
+                .hint(PersistenceHints.SOFT_DELETION, false)
+                .optional()
+                .map(LocalDateTime::toLocalDate);
+    }
+
+    private boolean canHaveVisits(VisitDay visitDay) {
+        return visitDay.amount() > 0 && randomVisitDateTime.isOpeningDay(visitDay.date());
+    }
+
+    /**
+     * The batches span windows. The days of a window are reported as done only after its last visit is written,
+     * so that the progress never contains days whose visits can still be lost.
+     */
+    private int commitInBatches(Stream<VisitWindow> windows) {
+        int batchSize = petclinicTestdataProperties.getBatchSize();
+        List<Visit> batch = new ArrayList<>(batchSize);
+        int visitCreatedCount = 0;
+        // days of the windows whose last visits are in the current batch
+        int pendingDays = 0;
+
+        Iterator<VisitWindow> iterator = windows.iterator();
+        while (iterator.hasNext()) {
+            VisitWindow window = iterator.next();
+            for (Visit visit : window.visits()) {
+                batch.add(visit);
+
+                if (batch.size() >= batchSize) {
+                    visitCreatedCount += write(batch);
+                    batch.clear();
+                    visitTestDataStatus.daysDone(pendingDays);
+                    pendingDays = 0;
+                }
+            }
+
+            pendingDays += window.days();
+            if (batch.isEmpty()) {
+                visitTestDataStatus.daysDone(pendingDays);
+                pendingDays = 0;
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            visitCreatedCount += write(batch);
+        }
+        visitTestDataStatus.daysDone(pendingDays);
+
+        return visitCreatedCount;
     }
 
+    private int write(List<Visit> visits) {
+        int written = petclinicTestdataProperties.isBulkLoad() ? visitBulkLoader.insert(visits) : commit(visits);
+        visitTestDataStatus.visitsWritten(written);
+        return written;
+    }
+
+    /**
+     * Saves the batch in its own transaction, so that the transaction size is bounded by the batch size.
+     */
     private int commit(List<Visit> visits) {
-        SaveContext saveContext = new SaveContext();
+        SaveContext saveContext = new SaveContext()
+                .setJoinTransaction(false);
         visits.forEach(saveContext::saving);
         dataManager.save(saveContext);
 
+        log.debug("{} Visits committed", visits.size());
+
         return visits.size();
     }
 
     Visit createVisit(
         LocalDate date,
+        LocalDate today,
         List<Pet> possiblePets,
-        List<User> possibleNurses
+        List<User> possibleNurses,
+        RandomGenerator random
     ) {
 
-        VisitEventRange visitEventRange = randomVisitDateTime.randomVisitEventRange(date);
+        VisitEventRange visitEventRange = randomVisitDateTime.randomVisitEventRange(date, random);
 
         if (visitEventRange.isEmpty()) {
             return null;
         }
 
         Visit visit = dataManager.create(Visit.class);
+        visit.setId(randomUuid(random));
 
-        visit.setTreatmentStatus(treatmentStatusFor(date));
+        visit.setTreatmentStatus(treatmentStatusFor(date, today));
 
-        if (nurseShouldBeAssigned(date)) {
-            visit.setAssignedNurse(randomOfList(possibleNurses));
+        if (nurseShouldBeAssigned(date, today)) {
+            visit.setAssignedNurse(randomOfList(possibleNurses, random));
         }
 
-        visit.setPet(randomOfList(possiblePets));
-        visit.setType(randomVisitType());
-        visit.setDescription(randomDescription());
+        visit.setPet(randomOfList(possiblePets, random));
+        visit.setType(randomVisitType(random));
+        visit.setDescription(randomDescription(random));
 
         visit.setVisitStart(visitEventRange.getVisitStart());
         visit.setVisitEnd(visitEventRange.getVisitEnd());
@@ -153,12 +420,11 @@ public class VisitTestDataCreation {
         return visit;
     }
 
-    private boolean nurseShouldBeAssigned(LocalDate date) {
-        return date.isBefore(timeSource.now().toLocalDate().plusWeeks(1).plusDays(1));
+    private boolean nurseShouldBeAssigned(LocalDate date, LocalDate today) {
+        return date.isBefore(today.plusWeeks(1).plusDays(1));
     }
 
-    private VisitTreatmentStatus treatmentStatusFor(LocalDate date) {
-        final LocalDate today = timeSource.now().toLocalDate();
+    static VisitTreatmentStatus treatmentStatusFor(LocalDate date, LocalDate today) {
         if (date.equals(today)) {
             return VisitTreatmentStatus.IN_PROGRESS;
         }
@@ -170,30 +436,64 @@ public class VisitTestDataCreation {
         }
     }
 
-    private VisitType randomVisitType() {
-        int pick = random().nextInt(VisitType.values().length);
+    private VisitType randomVisitType(RandomGenerator random) {
+        int pick = random.nextInt(VisitType.values().length);
         return VisitType.values()[pick];
     }
 
-    private String randomDescription() {
+    private String randomDescription(RandomGenerator random) {
         return randomOfList(
-                petclinicTestdataProperties.getDescriptionOptions()
+                petclinicTestdataProperties.getDescriptionOptions(),
+                random
         ).trim();
     }
 
-    private <T> T randomOfList(List<T> list) {
+    private <T> T randomOfList(List<T> list, RandomGenerator random) {
         if (CollectionUtils.isEmpty(list)) {
             return null;
         }
-        return list.get(random().nextInt(list.size()));
+        return list.get(random.nextInt(list.size()));
+    }
+
+    /**
+     * Creates a version 4 UUID from the given generator, so that the IDs are reproducible as well.
+     */
+    static UUID randomUuid(RandomGenerator random) {
+        long mostSigBits = (random.nextLong() & 0xFFFFFFFFFFFF0FFFL) | 0x0000000000004000L;
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private long masterSeed() {
+        Long seed = petclinicTestdataProperties.getSeed();
+        return seed != null ? seed : new SplittableRandom().nextLong();
+    }
+
+    private int parallelism() {
+        Integer parallelism = petclinicTestdataProperties.getParallelism();
+        return parallelism != null ? parallelism : Runtime.getRuntime().availableProcessors();
     }
 
-    private Random random() {
-        return new Random();
+    private static <T> List<T> sorted(List<T> list, Comparator<T> comparator) {
+        return list.stream()
+                .sorted(comparator)
+                .toList();
     }
 
     private <T> List<T> list(Class<T> entityClass) {
         return dataManager.load(entityClass).all().list();
     }
 
-}
\ No newline at end of file
+    /**
+     * A day for which visits are generated.
+     */
+    record VisitDay(LocalDate date, int amount) {
+    }
+
+    /**
+     * The visits generated for a window of consecutive days.
+     */
+    record VisitWindow(int days, List<Visit> visits) {
+    }
+
+}
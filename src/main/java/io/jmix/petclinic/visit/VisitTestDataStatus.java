@@ -0,0 +1,88 @@
+package io.jmix.petclinic.visit;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of the visit test data generation. Updated by {@link VisitTestDataCreation} and readable from any thread.
+ */
+@Component("petclinic_VisitTestDataStatus")
+public class VisitTestDataStatus {
+
+    public enum State {
+        NOT_STARTED,
+        RUNNING,
+        COMPLETED,
+        SKIPPED,
+        FAILED
+    }
+
+    private volatile State state = State.NOT_STARTED;
+    private volatile int totalDays;
+    private final AtomicInteger daysDone = new AtomicInteger();
+    private final AtomicInteger visitsWritten = new AtomicInteger();
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return true if no generation is running, regardless whether it completed, was skipped or failed
+     */
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.SKIPPED || state == State.FAILED;
+    }
+
+    public int getTotalDays() {
+        return totalDays;
+    }
+
+    public int getDaysDone() {
+        return daysDone.get();
+    }
+
+    public int getVisitsWritten() {
+        return visitsWritten.get();
+    }
+
+    void started(int totalDays) {
+        this.totalDays = totalDays;
+        daysDone.set(0);
+        visitsWritten.set(0);
+        state = State.RUNNING;
+    }
+
+    void daysDone(int amount) {
+        daysDone.addAndGet(amount);
+    }
+
+    void visitsWritten(int amount) {
+        visitsWritten.addAndGet(amount);
+    }
+
+    void completed() {
+        state = State.COMPLETED;
+    }
+
+    void skipped() {
+        state = State.SKIPPED;
+    }
+
+    /**
+     * Marks the generation as failed. Public, because the generation can also fail before
+     * {@link VisitTestDataCreation} is called.
+     */
+    public void failed() {
+        state = State.FAILED;
+    }
+
+    @Override
+    public String toString() {
+        return "VisitTestDataStatus{" +
+                "state=" + state +
+                ", daysDone=" + daysDone + "/" + totalDays +
+                ", visitsWritten=" + visitsWritten +
+                '}';
+    }
+}
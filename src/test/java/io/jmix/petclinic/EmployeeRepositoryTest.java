@@ -0,0 +1,175 @@
+package io.jmix.petclinic;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.core.SaveContext;
+import io.jmix.petclinic.entity.User;
+import io.jmix.petclinic.security.NurseRole;
+import io.jmix.petclinic.security.UiMinimalRole;
+import io.jmix.petclinic.test_support.AuthenticatedAsAdmin;
+import io.jmix.security.role.assignment.RoleAssignmentRoleType;
+import io.jmix.securitydata.entity.RoleAssignmentEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration test for EmployeeRepository
+ */
+@SpringBootTest
+@ExtendWith(AuthenticatedAsAdmin.class)
+public class EmployeeRepositoryTest {
+
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    EmployeeRepository employeeRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    List<Object> createdEntities = new ArrayList<>();
+
+    @Test
+    void test_findAllByRole_usersWithRoleOrderedByUsername() {
+        // given:
+        User secondNurse = saveUserWithRole("z-test-nurse-" + UUID.randomUUID(), NurseRole.CODE);
+        User firstNurse = saveUserWithRole("a-test-nurse-" + UUID.randomUUID(), NurseRole.CODE);
+        User otherUser = saveUserWithRole("test-user-" + UUID.randomUUID(), UiMinimalRole.CODE);
+
+        // when:
+        List<User> nurses = employeeRepository.findAllByRole(NurseRole.CODE);
+
+        // then:
+        assertThat(nurses)
+                .contains(firstNurse, secondNurse)
+                .doesNotContain(otherUser)
+                .isSortedAccordingTo(Comparator.comparing(User::getUsername));
+    }
+
+    @Test
+    void test_cachedNurses_returnedWithoutLoading() {
+        // given:
+        List<User> loadedNurses = employeeRepository.findAllNurses();
+        long cacheMisses = employeeRepository.getCacheMisses();
+
+        // when:
+        List<User> cachedNurses = employeeRepository.findAllNurses();
+
+        // then:
+        assertThat(cachedNurses).isEqualTo(loadedNurses);
+        assertThat(employeeRepository.getCacheMisses()).isEqualTo(cacheMisses);
+    }
+
+    @Test
+    void test_returnedNurseChanged_cachedNurseUnchanged() {
+        // given:
+        User nurse = employeeRepository.findAllNurses().get(0);
+        String lastName = nurse.getLastName();
+
+        // when:
+        nurse.setLastName("Changed");
+
+        // then:
+        assertThat(employeeRepository.findAllNurses().get(0))
+                .isNotSameAs(nurse)
+                .extracting(User::getLastName)
+                .isEqualTo(lastName);
+    }
+
+    @Test
+    void test_cacheInvalidated_nursesLoadedAgain() {
+        // given:
+        employeeRepository.findAllNurses();
+        long cacheMisses = employeeRepository.getCacheMisses();
+
+        // when:
+        employeeRepository.invalidateCache();
+        employeeRepository.findAllNurses();
+
+        // then:
+        assertThat(employeeRepository.getCacheMisses()).isEqualTo(cacheMisses + 1);
+    }
+
+    @Test
+    void test_roleAssignmentCommitted_newNurseFound() {
+        // given:
+        employeeRepository.findAllNurses();
+
+        // when:
+        User nurse = saveUserWithRole("test-nurse-" + UUID.randomUUID(), NurseRole.CODE);
+
+        // then:
+        assertThat(employeeRepository.findAllNurses()).contains(nurse);
+    }
+
+    @Test
+    void test_userChangeCommitted_changedNurseFound() {
+        // given:
+        User nurse = saveUserWithRole("test-nurse-" + UUID.randomUUID(), NurseRole.CODE);
+        employeeRepository.findAllNurses();
+
+        // when:
+        User loadedNurse = dataManager.load(User.class).id(nurse.getId()).one();
+        loadedNurse.setLastName("Changed");
+        dataManager.save(loadedNurse);
+
+        // then:
+        assertThat(employeeRepository.findAllNurses())
+                .filteredOn(it -> it.getId().equals(nurse.getId()))
+                .extracting(User::getLastName)
+                .containsExactly("Changed");
+    }
+
+    @Test
+    void test_roleAssignmentNotCommitted_cacheNotInvalidated() {
+        // given:
+        List<User> cachedNurses = employeeRepository.findAllNurses();
+
+        // when:
+        List<User> nursesBeforeCommit = transactionTemplate.execute(status -> {
+            saveUserWithRole("test-nurse-" + UUID.randomUUID(), NurseRole.CODE);
+            return employeeRepository.findAllNurses();
+        });
+
+        // then: the cache is invalidated only after the commit
+        assertThat(nursesBeforeCommit).isEqualTo(cachedNurses);
+        assertThat(employeeRepository.findAllNurses()).hasSize(cachedNurses.size() + 1);
+    }
+
+    @Test
+    void test_findAllByUsernames_noUsernames_noUsers() {
+        // expect:
+        assertThat(employeeRepository.findAllByUsernames(List.of())).isEmpty();
+    }
+
+    private User saveUserWithRole(String username, String roleCode) {
+        User user = dataManager.create(User.class);
+        user.setUsername(username);
+        user.setPassword("{noop}test-passwd");
+
+        RoleAssignmentEntity roleAssignment = dataManager.create(RoleAssignmentEntity.class);
+        roleAssignment.setUsername(username);
+        roleAssignment.setRoleCode(roleCode);
+        roleAssignment.setRoleType(RoleAssignmentRoleType.RESOURCE);
+
+        dataManager.save(new SaveContext().saving(user, roleAssignment));
+        createdEntities.add(roleAssignment);
+        createdEntities.add(user);
+        return user;
+    }
+
+    @AfterEach
+    void tearDown() {
+        createdEntities.forEach(it -> dataManager.remove(Id.of(it)));
+    }
+}
@@ -13,10 +13,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -33,6 +35,8 @@ public class AssignNurseToVisitAutomaticallyTest {
     List<Visit> createdVisits = new ArrayList<>();
     @Autowired
     private EmployeeRepository employeeRepository;
+    @Autowired
+    private NurseAssignmentQueue nurseAssignmentQueue;
     private User comfey;
     private User joy;
     private LocalDateTime visitDate;
@@ -50,7 +54,7 @@ public class AssignNurseToVisitAutomaticallyTest {
     }
 
     @Test
-    void test_nurseAssignmentOnOverlappingVisits() {
+    void test_nurseAssignmentOnOverlappingVisits() throws InterruptedException {
 
         // given: Create Visit 1 with Nurse Joy (13:00 - 13:30)
         Visit visit1 = createVisit(
@@ -67,12 +71,13 @@ public class AssignNurseToVisitAutomaticallyTest {
         dataManager.save(visit2);
 
         // then:
+        awaitNurseAssignment();
         Visit loadedVisit2 = dataManager.load(Visit.class).id(visit2.getId()).one();
         assertThat(loadedVisit2.getAssignedNurse()).isEqualTo(comfey);
     }
 
     @Test
-    void test_noNurseAvailable_noAssignmentOccurs() {
+    void test_noNurseAvailable_noAssignmentOccurs() throws InterruptedException {
         // Given: Joy and Comfey are both booked from 13:00 to 13:30
         Visit visit1 = createVisit(
                 visitDate.withHour(13).withMinute(0),
@@ -94,13 +99,14 @@ public class AssignNurseToVisitAutomaticallyTest {
         dataManager.save(visit3);
 
         // Then: No nurse is assigned because both are occupied
+        awaitNurseAssignment();
         Visit loadedVisit3 = dataManager.load(Visit.class).id(visit3.getId()).one();
         assertThat(loadedVisit3.getAssignedNurse()).isNull();
     }
 
 
     @Test
-    void test_bothNursesAvailable_firstOneSelected() {
+    void test_bothNursesAvailable_firstOneSelected() throws InterruptedException {
         // When: A new visit (13:00 - 13:30) is created without an assigned nurse
         Visit visit = createVisit(
                 visitDate.withHour(13).withMinute(0),
@@ -109,12 +115,13 @@ public class AssignNurseToVisitAutomaticallyTest {
         dataManager.save(visit);
 
         // Then: The first available nurse is assigned
+        awaitNurseAssignment();
         Visit loadedVisit = dataManager.load(Visit.class).id(visit.getId()).one();
         assertThat(loadedVisit.getAssignedNurse()).isIn(List.of(comfey, joy));
     }
 
     @Test
-    void test_backToBackVisits_otherNurseAssigned() {
+    void test_backToBackVisits_otherNurseAssigned() throws InterruptedException {
         // Given: Joy is booked from 13:00 to 13:30
         Visit visit1 = createVisit(
                 visitDate.withHour(13).withMinute(0),
@@ -129,14 +136,63 @@ public class AssignNurseToVisitAutomaticallyTest {
                 null);
         dataManager.save(visit2);
 
-        // Then: Comfey is assigned to give nurses a little pause
+        // Then: Comfey is assigned, because Joy has already more booked minutes on that day
+        awaitNurseAssignment();
         Visit loadedVisit2 = dataManager.load(Visit.class).id(visit2.getId()).one();
         assertThat(loadedVisit2.getAssignedNurse()).isEqualTo(comfey);
     }
 
 
     @Test
-    void test_shortVisitWithinLongVisit_otherNurseAssigned() {
+    void test_bothNursesAvailable_leastLoadedNurseSelected() throws InterruptedException {
+        // Given: Joy is booked for 60 minutes and Comfey for 30 minutes in the morning
+        dataManager.save(createVisit(
+                visitDate.withHour(9).withMinute(0),
+                visitDate.withHour(10).withMinute(0),
+                joy));
+        dataManager.save(createVisit(
+                visitDate.withHour(9).withMinute(0),
+                visitDate.withHour(9).withMinute(30),
+                comfey));
+
+        // When: A new visit (15:00 - 15:30) is created without an assigned nurse
+        Visit visit = dataManager.save(createVisit(
+                visitDate.withHour(15).withMinute(0),
+                visitDate.withHour(15).withMinute(30),
+                null));
+
+        // Then: Comfey is assigned, because Comfey has fewer booked minutes on that day
+        awaitNurseAssignment();
+        Visit loadedVisit = dataManager.load(Visit.class).id(visit.getId()).one();
+        assertThat(loadedVisit.getAssignedNurse()).isEqualTo(comfey);
+    }
+
+    @Test
+    void test_bookedMinutesOfOtherDay_notCounted() throws InterruptedException {
+        // Given: Comfey is booked for 60 minutes on the day before, Joy for 30 minutes on the day of the visit
+        dataManager.save(createVisit(
+                visitDate.minusDays(1).withHour(9).withMinute(0),
+                visitDate.minusDays(1).withHour(10).withMinute(0),
+                comfey));
+        dataManager.save(createVisit(
+                visitDate.withHour(9).withMinute(0),
+                visitDate.withHour(9).withMinute(30),
+                joy));
+
+        // When: A new visit (15:00 - 15:30) is created without an assigned nurse
+        Visit visit = dataManager.save(createVisit(
+                visitDate.withHour(15).withMinute(0),
+                visitDate.withHour(15).withMinute(30),
+                null));
+
+        // Then: Comfey is assigned, because Comfey has no booked minutes on the day of the visit
+        awaitNurseAssignment();
+        Visit loadedVisit = dataManager.load(Visit.class).id(visit.getId()).one();
+        assertThat(loadedVisit.getAssignedNurse()).isEqualTo(comfey);
+    }
+
+    @Test
+    void test_shortVisitWithinLongVisit_otherNurseAssigned() throws InterruptedException {
         // Given: Joy has a long visit from 13:00 to 14:00
         Visit longVisit = createVisit(
                 visitDate.withHour(13).withMinute(0),
@@ -152,10 +208,77 @@ public class AssignNurseToVisitAutomaticallyTest {
         dataManager.save(shortVisit);
 
         // Then: Comfey is assigned because Joy is occupied
+        awaitNurseAssignment();
         Visit loadedShortVisit = dataManager.load(Visit.class).id(shortVisit.getId()).one();
         assertThat(loadedShortVisit.getAssignedNurse()).isEqualTo(comfey);
     }
 
+    @Test
+    void test_rescheduledVisit_nurseAvailableAgain() throws InterruptedException {
+        // Given: Joy and Comfey are both booked from 13:00 to 13:30
+        Visit visit1 = dataManager.save(createVisit(
+                visitDate.withHour(13).withMinute(0),
+                visitDate.withHour(13).withMinute(30),
+                joy));
+        dataManager.save(createVisit(
+                visitDate.withHour(13).withMinute(0),
+                visitDate.withHour(13).withMinute(30),
+                comfey));
+
+        // And: The visit of Joy is rescheduled to 15:00 - 15:30
+        visit1.setVisitStart(visitDate.withHour(15).withMinute(0));
+        visit1.setVisitEnd(visitDate.withHour(15).withMinute(30));
+        dataManager.save(visit1);
+
+        // When: A new visit (13:15 - 13:45) is created without an assigned nurse
+        Visit visit3 = createVisit(
+                visitDate.withHour(13).withMinute(15),
+                visitDate.withHour(13).withMinute(45),
+                null);
+        dataManager.save(visit3);
+
+        // Then: Joy is assigned, because Joy is not occupied anymore
+        awaitNurseAssignment();
+        Visit loadedVisit3 = dataManager.load(Visit.class).id(visit3.getId()).one();
+        assertThat(loadedVisit3.getAssignedNurse()).isEqualTo(joy);
+    }
+
+    @Test
+    void test_queueFull_nurseAssignedOnCommittingThread() throws InterruptedException {
+        // Given: The queue is full of assignments that wait until they are released
+        awaitNurseAssignment();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < NurseAssignmentQueue.CAPACITY; i++) {
+                nurseAssignmentQueue.submit("Blocking assignment %d".formatted(i), () -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+
+            // When: A new visit (13:00 - 13:30) is created without an assigned nurse
+            Visit visit = createVisit(
+                    visitDate.withHour(13).withMinute(0),
+                    visitDate.withHour(13).withMinute(30),
+                    null);
+            dataManager.save(visit);
+
+            // Then: The nurse is assigned and committed before saving the visit returns
+            Visit loadedVisit = dataManager.load(Visit.class).id(visit.getId()).one();
+            assertThat(loadedVisit.getAssignedNurse()).isIn(List.of(comfey, joy));
+        } finally {
+            release.countDown();
+        }
+        awaitNurseAssignment();
+    }
+
+    private void awaitNurseAssignment() throws InterruptedException {
+        assertThat(nurseAssignmentQueue.awaitIdle(Duration.ofSeconds(10))).isTrue();
+    }
+
     private Visit createVisit(LocalDateTime start, LocalDateTime end, User nurse) {
         Visit visit = dataManager.create(Visit.class);
         visit.setVisitStart(start);
@@ -0,0 +1,136 @@
+package io.jmix.petclinic.entity.visit;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.core.SaveContext;
+import io.jmix.petclinic.EmployeeRepository;
+import io.jmix.petclinic.entity.User;
+import io.jmix.petclinic.entity.pet.Pet;
+import io.jmix.petclinic.test_support.AuthenticatedAsAdmin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration test for BatchNurseAssignment
+ */
+@SpringBootTest
+@ExtendWith(AuthenticatedAsAdmin.class)
+public class BatchNurseAssignmentTest {
+
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    BatchNurseAssignment batchNurseAssignment;
+    @Autowired
+    NurseAssignmentQueue nurseAssignmentQueue;
+    @Autowired
+    EmployeeRepository employeeRepository;
+
+    List<Visit> createdVisits = new ArrayList<>();
+    private User joy;
+    private LocalDateTime visitDate;
+
+    @BeforeEach
+    void setUp() {
+        joy = employeeRepository.findAllNurses().stream()
+                .filter(it -> it.getUsername().equals("joy"))
+                .findFirst()
+                .orElseThrow();
+        visitDate = LocalDateTime.now().plusDays(new Random().nextLong(10000, 100000));
+    }
+
+    @Test
+    void test_overlappingVisitsOfOneTransaction_differentNursesAssigned() throws InterruptedException {
+        // when: two overlapping visits are created in one transaction
+        Visit visit1 = createVisit(visitDate.withHour(13).withMinute(0), visitDate.withHour(13).withMinute(30), null);
+        Visit visit2 = createVisit(visitDate.withHour(13).withMinute(15), visitDate.withHour(13).withMinute(45), null);
+        dataManager.save(new SaveContext().saving(visit1, visit2));
+
+        // then:
+        awaitNurseAssignment();
+        User nurse1 = loadAssignedNurse(visit1);
+        User nurse2 = loadAssignedNurse(visit2);
+        assertThat(nurse1).isNotNull();
+        assertThat(nurse2).isNotNull().isNotEqualTo(nurse1);
+    }
+
+    @Test
+    void test_nurseAssignedWithinBatch_otherNurseForOverlappingVisit() throws InterruptedException {
+        // when: a visit with Joy and an overlapping visit without nurse are created in one transaction
+        Visit visitOfJoy = createVisit(
+                visitDate.withHour(13).withMinute(0), visitDate.withHour(13).withMinute(30), joy);
+        Visit visit = createVisit(visitDate.withHour(13).withMinute(15), visitDate.withHour(13).withMinute(45), null);
+        dataManager.save(new SaveContext().saving(visitOfJoy, visit));
+
+        // then: Joy is not assigned, although the visit of Joy was not indexed before the batch
+        awaitNurseAssignment();
+        assertThat(loadAssignedNurse(visitOfJoy)).isEqualTo(joy);
+        assertThat(loadAssignedNurse(visit)).isNotNull().isNotEqualTo(joy);
+    }
+
+    @Test
+    void test_visitsOfBatch_notHandledTwice() throws InterruptedException {
+        // given:
+        Visit visit1 = createVisit(visitDate.withHour(9).withMinute(0), visitDate.withHour(9).withMinute(30), null);
+        Visit visit2 = createVisit(visitDate.withHour(10).withMinute(0), visitDate.withHour(10).withMinute(30), null);
+
+        // when:
+        dataManager.save(new SaveContext().saving(visit1, visit2));
+        awaitNurseAssignment();
+
+        // then: the per visit listener skipped both visits and removed them from the handled visits
+        assertThat(batchNurseAssignment.handledInBatch(visit1.getId())).isFalse();
+        assertThat(batchNurseAssignment.handledInBatch(visit2.getId())).isFalse();
+        assertThat(loadAssignedNurse(visit1)).isNotNull();
+        assertThat(loadAssignedNurse(visit2)).isNotNull();
+    }
+
+    @Test
+    void test_singleVisit_notHandledInBatch() throws InterruptedException {
+        // when:
+        Visit visit = createVisit(visitDate.withHour(9).withMinute(0), visitDate.withHour(9).withMinute(30), null);
+        dataManager.save(visit);
+
+        // then: the visit is assigned by the per visit listener
+        awaitNurseAssignment();
+        assertThat(batchNurseAssignment.handledInBatch(visit.getId())).isFalse();
+        assertThat(loadAssignedNurse(visit)).isNotNull();
+    }
+
+    private User loadAssignedNurse(Visit visit) {
+        return dataManager.load(Visit.class).id(visit.getId()).one().getAssignedNurse();
+    }
+
+    private void awaitNurseAssignment() throws InterruptedException {
+        assertThat(nurseAssignmentQueue.awaitIdle(Duration.ofSeconds(10))).isTrue();
+    }
+
+    private Visit createVisit(LocalDateTime start, LocalDateTime end, User nurse) {
+        Visit visit = dataManager.create(Visit.class);
+        visit.setVisitStart(start);
+        visit.setVisitEnd(end);
+        visit.setType(VisitType.REGULAR_CHECKUP);
+        visit.setPet(dataManager.load(Pet.class).all().one());
+        visit.setTreatmentStatus(VisitTreatmentStatus.UPCOMING);
+        visit.setAssignedNurse(nurse);
+        createdVisits.add(visit);
+        return visit;
+    }
+
+    @AfterEach
+    void tearDown() {
+        createdVisits.forEach(it -> dataManager.remove(Id.of(it)));
+    }
+}
@@ -0,0 +1,209 @@
+package io.jmix.petclinic.entity.visit;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.core.TimeSource;
+import io.jmix.petclinic.EmployeeRepository;
+import io.jmix.petclinic.entity.User;
+import io.jmix.petclinic.entity.pet.Pet;
+import io.jmix.petclinic.test_support.AuthenticatedAsAdmin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Integration test for NurseAvailabilityIndex. The tests that move the current day use their own index with
+ * a mocked time source, the others use the index of the application, which is updated from the saved visits.
+ */
+@SpringBootTest
+@ExtendWith(AuthenticatedAsAdmin.class)
+public class NurseAvailabilityIndexTest {
+
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    NurseAvailabilityIndex nurseAvailabilityIndex;
+    @Autowired
+    EmployeeRepository employeeRepository;
+
+    List<Visit> createdVisits = new ArrayList<>();
+    private User nurse;
+    private LocalDateTime visitDate;
+    private LocalDateTime now;
+    private NurseAvailabilityIndex indexWithMockedTime;
+
+    @BeforeEach
+    void setUp() {
+        nurse = employeeRepository.findAllNurses().get(0);
+        visitDate = LocalDateTime.now().plusDays(new Random().nextLong(10000, 100000)).withNano(0);
+
+        TimeSource timeSource = mock(TimeSource.class);
+        when(timeSource.now()).thenAnswer(invocation -> now.atZone(ZoneId.systemDefault()));
+        indexWithMockedTime = new NurseAvailabilityIndex(dataManager, timeSource);
+    }
+
+    @Test
+    void test_backToBackRanges_available() {
+        // given:
+        UUID nurseId = UUID.randomUUID();
+        reserve(nurseId, at(10, 0), at(10, 30));
+
+        // expect: ranges that end when the booking starts or start when it ends do not overlap
+        assertThat(nurseAvailabilityIndex.isAvailable(nurseId, at(9, 30), at(10, 0))).isTrue();
+        assertThat(nurseAvailabilityIndex.isAvailable(nurseId, at(10, 30), at(11, 0))).isTrue();
+    }
+
+    @Test
+    void test_nestedRanges_notAvailable() {
+        // given:
+        UUID nurseId = UUID.randomUUID();
+        reserve(nurseId, at(10, 0), at(11, 0));
+
+        // expect:
+        assertThat(nurseAvailabilityIndex.isAvailable(nurseId, at(10, 15), at(10, 45))).isFalse();
+        assertThat(nurseAvailabilityIndex.isAvailable(nurseId, at(9, 0), at(12, 0))).isFalse();
+        assertThat(nurseAvailabilityIndex.isAvailable(nurseId, at(10, 0), at(11, 0))).isFalse();
+    }
+
+    @Test
+    void test_rangeAtEndOfLongBooking_notAvailable() {
+        // given: the booking starts long before the range
+        UUID nurseId = UUID.randomUUID();
+        reserve(nurseId, at(8, 0), at(12, 0));
+        reserve(nurseId, at(12, 0), at(12, 30));
+
+        // expect:
+        assertThat(nurseAvailabilityIndex.isAvailable(nurseId, at(11, 30), at(11, 45))).isFalse();
+    }
+
+    @Test
+    void test_cancelledReservation_available() {
+        // given:
+        UUID nurseId = UUID.randomUUID();
+        UUID visitId = reserve(nurseId, at(10, 0), at(10, 30));
+
+        // when:
+        nurseAvailabilityIndex.cancel(visitId);
+
+        // then:
+        assertThat(nurseAvailabilityIndex.isAvailable(nurseId, at(10, 0), at(10, 30))).isTrue();
+        assertThat(nurseAvailabilityIndex.getBookedMinutes(nurseId, visitDate.toLocalDate())).isZero();
+    }
+
+    @Test
+    void test_visitDeleted_nurseReleased() {
+        // given:
+        Visit visit = saveVisit(at(10, 0), at(10, 30));
+        assertThat(nurseAvailabilityIndex.isAvailable(nurse.getId(), at(10, 0), at(10, 30))).isFalse();
+
+        // when:
+        dataManager.remove(Id.of(visit));
+        createdVisits.remove(visit);
+
+        // then:
+        assertThat(nurseAvailabilityIndex.isAvailable(nurse.getId(), at(10, 0), at(10, 30))).isTrue();
+        assertThat(nurseAvailabilityIndex.getBookedMinutes(nurse.getId(), visitDate.toLocalDate())).isZero();
+    }
+
+    @Test
+    void test_visitRescheduled_oldRangeReleased() {
+        // given:
+        Visit visit = saveVisit(at(10, 0), at(10, 30));
+
+        // when:
+        Visit loadedVisit = dataManager.load(Visit.class).id(visit.getId()).one();
+        loadedVisit.setVisitStart(at(14, 0));
+        loadedVisit.setVisitEnd(at(15, 0));
+        dataManager.save(loadedVisit);
+
+        // then:
+        assertThat(nurseAvailabilityIndex.isAvailable(nurse.getId(), at(10, 0), at(10, 30))).isTrue();
+        assertThat(nurseAvailabilityIndex.isAvailable(nurse.getId(), at(14, 30), at(15, 30))).isFalse();
+        assertThat(nurseAvailabilityIndex.getBookedMinutes(nurse.getId(), visitDate.toLocalDate())).isEqualTo(60);
+    }
+
+    @Test
+    void test_visitsBulkInserted_nurseBooked() {
+        // given:
+        UUID nurseId = UUID.randomUUID();
+        nurseAvailabilityIndex.isAvailable(nurseId, at(10, 0), at(10, 30));
+
+        // when:
+        nurseAvailabilityIndex.onVisitsBulkInserted(new VisitsBulkInsertedEvent(List.of(
+                new VisitsBulkInsertedEvent.InsertedVisit(UUID.randomUUID(), nurseId, at(10, 0), at(10, 30)),
+                new VisitsBulkInsertedEvent.InsertedVisit(UUID.randomUUID(), null, at(11, 0), at(11, 30)))));
+
+        // then:
+        assertThat(nurseAvailabilityIndex.isAvailable(nurseId, at(10, 0), at(10, 30))).isFalse();
+        assertThat(nurseAvailabilityIndex.getBookedMinutes(nurseId, visitDate.toLocalDate())).isEqualTo(30);
+    }
+
+    @Test
+    void test_dayChanged_endedVisitsEvicted() {
+        // given:
+        saveVisit(at(10, 0), at(10, 30));
+        now = at(8, 0);
+        assertThat(indexWithMockedTime.getBookedMinutes(nurse.getId(), visitDate.toLocalDate())).isEqualTo(30);
+
+        // when:
+        now = at(8, 0).plusDays(1);
+
+        // then:
+        assertThat(indexWithMockedTime.getBookedMinutes(nurse.getId(), visitDate.toLocalDate())).isZero();
+    }
+
+    @Test
+    void test_rangeBeforeToday_checkedAgainstDatabase() {
+        // given: the visit ended before the current day, so it is not indexed
+        saveVisit(at(10, 0), at(10, 30));
+        now = at(8, 0).plusDays(1);
+
+        // expect:
+        assertThat(indexWithMockedTime.isAvailable(nurse.getId(), at(10, 15), at(10, 45))).isFalse();
+        assertThat(indexWithMockedTime.isAvailable(nurse.getId(), at(10, 30), at(11, 0))).isTrue();
+    }
+
+    private LocalDateTime at(int hour, int minute) {
+        return visitDate.withHour(hour).withMinute(minute).withSecond(0);
+    }
+
+    private UUID reserve(UUID nurseId, LocalDateTime visitStart, LocalDateTime visitEnd) {
+        UUID visitId = UUID.randomUUID();
+        assertThat(nurseAvailabilityIndex.reserve(visitId, List.of(nurseId), visitStart, visitEnd)).contains(nurseId);
+        return visitId;
+    }
+
+    private Visit saveVisit(LocalDateTime visitStart, LocalDateTime visitEnd) {
+        Visit visit = dataManager.create(Visit.class);
+        visit.setVisitStart(visitStart);
+        visit.setVisitEnd(visitEnd);
+        visit.setType(VisitType.REGULAR_CHECKUP);
+        visit.setPet(dataManager.load(Pet.class).all().maxResults(1).one());
+        visit.setTreatmentStatus(VisitTreatmentStatus.UPCOMING);
+        // no automatic nurse assignment
+        visit.setAssignedNurse(nurse);
+        Visit savedVisit = dataManager.save(visit);
+        createdVisits.add(savedVisit);
+        return savedVisit;
+    }
+
+    @AfterEach
+    void tearDown() {
+        createdVisits.forEach(it -> dataManager.remove(Id.of(it)));
+        nurseAvailabilityIndex.invalidate();
+    }
+}
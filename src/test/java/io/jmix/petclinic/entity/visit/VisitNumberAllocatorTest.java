@@ -0,0 +1,103 @@
+package io.jmix.petclinic.entity.visit;
+
+import io.jmix.data.Sequence;
+import io.jmix.data.Sequences;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration test for VisitNumberAllocator. Every allocator created here acts like another application instance
+ * that shares the sequences in the database.
+ */
+@SpringBootTest
+public class VisitNumberAllocatorTest {
+
+    private static final int BLOCK_SIZE = 3;
+
+    @Autowired
+    Sequences sequences;
+
+    @Test
+    void test_numbersOfOneBlock_consecutive() {
+        // given:
+        VisitNumberAllocator allocator = new VisitNumberAllocator(sequences, BLOCK_SIZE);
+
+        // when:
+        long first = allocator.nextValue();
+        long second = allocator.nextValue();
+        long third = allocator.nextValue();
+        long fourth = allocator.nextValue();
+
+        // then: the fourth number is taken from the next block
+        assertThat(second).isEqualTo(first + 1);
+        assertThat(third).isEqualTo(first + 2);
+        assertThat(fourth).isGreaterThanOrEqualTo(first + VisitNumberAllocator.BLOCK_STRIDE);
+    }
+
+    @Test
+    void test_twoInstances_noNumberHandedOutTwice() {
+        // given:
+        VisitNumberAllocator allocator = new VisitNumberAllocator(sequences, BLOCK_SIZE);
+        VisitNumberAllocator otherAllocator = new VisitNumberAllocator(sequences, BLOCK_SIZE);
+
+        // when:
+        long first = allocator.nextValue();
+        long otherFirst = otherAllocator.nextValue();
+        long second = allocator.nextValue();
+
+        // then: the blocks of the instances do not overlap
+        assertThat(Math.abs(otherFirst - first)).isGreaterThanOrEqualTo(VisitNumberAllocator.BLOCK_STRIDE);
+        assertThat(second).isEqualTo(first + 1);
+    }
+
+    @Test
+    void test_numbers_continueAfterLegacySequence() {
+        // given:
+        long legacyValue = sequences.getCurrentValue(Sequence.withName("visit_number"));
+
+        // when:
+        long first = new VisitNumberAllocator(sequences, BLOCK_SIZE).nextValue();
+
+        // then:
+        assertThat(first).isGreaterThan(legacyValue);
+    }
+
+    @Test
+    void test_advancePast_nextNumbersGreaterThanValue() {
+        // given:
+        VisitNumberAllocator allocator = new VisitNumberAllocator(sequences, BLOCK_SIZE);
+        VisitNumberAllocator otherAllocator = new VisitNumberAllocator(sequences, BLOCK_SIZE);
+        long restoredValue = allocator.nextValue() + 10 * VisitNumberAllocator.BLOCK_STRIDE;
+
+        // when: visits with numbers up to the restored value were written without the allocator
+        allocator.advancePast(restoredValue);
+
+        // then: the current block is discarded, and other instances reserve blocks after the value as well
+        assertThat(allocator.nextValue()).isGreaterThan(restoredValue);
+        assertThat(otherAllocator.nextValue()).isGreaterThan(restoredValue);
+    }
+
+    @Test
+    void test_advancePastSmallerValue_currentBlockKept() {
+        // given:
+        VisitNumberAllocator allocator = new VisitNumberAllocator(sequences, BLOCK_SIZE);
+        long first = allocator.nextValue();
+
+        // when:
+        allocator.advancePast(first - 1);
+
+        // then:
+        assertThat(allocator.nextValue()).isEqualTo(first + 1);
+    }
+
+    @Test
+    void test_blockSizeLargerThanStride_rejected() {
+        // expect:
+        assertThatThrownBy(() -> new VisitNumberAllocator(sequences, VisitNumberAllocator.BLOCK_STRIDE + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
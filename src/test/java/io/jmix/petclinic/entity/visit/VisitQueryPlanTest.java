@@ -0,0 +1,97 @@
+package io.jmix.petclinic.entity.visit;
+
+import io.jmix.petclinic.view.main.MainView;
+import io.jmix.petclinic.view.visit.calendar.VisitCalendarEntries;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.eclipse.persistence.jpa.JpaEntityManager;
+import org.eclipse.persistence.jpa.JpaQuery;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.DatabaseRecord;
+import org.eclipse.persistence.sessions.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks via HSQLDB {@code EXPLAIN PLAN} that the frequent visit queries use the composite indexes of
+ * {@code PETCLINIC_VISIT} instead of a full table scan. The explained SQL is the one EclipseLink generates for the
+ * JPQL query constants of the application, including the soft delete condition.
+ */
+@SpringBootTest
+public class VisitQueryPlanTest {
+
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Test
+    void calendarQuery_usesTimeRangeIndex() {
+        // given:
+        String sql = generatedSql(VisitCalendarEntries.DAILY_COUNTS_QUERY);
+
+        // when:
+        String plan = explain(sql,
+                LocalDateTime.of(2025, 1, 1, 0, 0),
+                LocalDateTime.of(2025, 2, 1, 0, 0));
+
+        // then:
+        assertThat(sql).containsIgnoringCase("DELETED_DATE IS NULL");
+        assertUsesIndex(plan, "IDX_PETCLINIC_VISIT_TIME_RANGE");
+    }
+
+    @Test
+    void openVisitsOfNurseQuery_usesNurseWorkloadIndex() {
+        // given:
+        String sql = generatedSql(MainView.OPEN_VISITS_OF_NURSE_QUERY);
+
+        // when:
+        String plan = explain(sql,
+                UUID.fromString("60885987-1b61-4247-94c7-dff348347f93"),
+                VisitTreatmentStatus.DONE.getId());
+
+        // then:
+        assertThat(sql).containsIgnoringCase("DELETED_DATE IS NULL");
+        assertUsesIndex(plan, "IDX_PETCLINIC_VISIT_NURSE_WORKLOAD");
+    }
+
+    /**
+     * @return SQL that EclipseLink generates for the JPQL query, with a {@code ?} for every parameter
+     */
+    private String generatedSql(String jpql) {
+        return transactionTemplate.execute(status -> {
+            Session session = entityManager.unwrap(JpaEntityManager.class).getActiveSession();
+            DatabaseQuery databaseQuery = entityManager.createQuery(jpql)
+                    .unwrap(JpaQuery.class)
+                    .getDatabaseQuery();
+            databaseQuery.prepareCall(session, new DatabaseRecord());
+            return databaseQuery.getSQLString();
+        });
+    }
+
+    /**
+     * @param parameters values of the {@code ?} parameters in the order of their occurrence in the SQL
+     */
+    private String explain(String sql, Object... parameters) {
+        assertThat(sql.chars().filter(c -> c == '?')).hasSize(parameters.length);
+        return String.join("\n", new JdbcTemplate(dataSource)
+                .queryForList("explain plan for " + sql, String.class, parameters));
+    }
+
+    private static void assertUsesIndex(String plan, String indexName) {
+        assertThat(plan)
+                .contains("index=" + indexName)
+                .doesNotContain("access=FULL SCAN");
+    }
+}
@@ -0,0 +1,192 @@
+package io.jmix.petclinic.entity.visit;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.petclinic.EmployeeRepository;
+import io.jmix.petclinic.entity.pet.Pet;
+import io.jmix.petclinic.test_support.AuthenticatedAsAdmin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration test for VisitRescheduler
+ */
+@SpringBootTest
+@ExtendWith(AuthenticatedAsAdmin.class)
+public class VisitReschedulerTest {
+
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    VisitRescheduler visitRescheduler;
+    @Autowired
+    EmployeeRepository employeeRepository;
+
+    private Visit visit;
+    private LocalDateTime visitDate;
+    private final BlockingQueue<VisitRescheduleResult> results = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setUp() {
+        visitDate = LocalDateTime.now().plusDays(new Random().nextLong(10000, 100000)).withNano(0);
+
+        Visit newVisit = dataManager.create(Visit.class);
+        newVisit.setVisitStart(visitDate.withHour(13).withMinute(0));
+        newVisit.setVisitEnd(visitDate.withHour(13).withMinute(30));
+        newVisit.setType(VisitType.REGULAR_CHECKUP);
+        newVisit.setPet(dataManager.load(Pet.class).all().one());
+        newVisit.setTreatmentStatus(VisitTreatmentStatus.UPCOMING);
+        // no automatic nurse assignment, which would change the version
+        newVisit.setAssignedNurse(employeeRepository.findAllNurses().get(0));
+        visit = dataManager.save(newVisit);
+    }
+
+    @Test
+    void test_currentVersion_visitRescheduled() throws InterruptedException {
+        // when:
+        visitRescheduler.reschedule(visit.getId(), visit.getVersion(),
+                visitDate.withHour(15).withMinute(0), visitDate.withHour(15).withMinute(30), results::add);
+
+        // then:
+        VisitRescheduleResult result = awaitResult();
+        assertThat(result.conflict()).isFalse();
+        assertThat(result.version()).isEqualTo(visit.getVersion() + 1);
+
+        Visit loadedVisit = loadVisit();
+        assertThat(loadedVisit.getVisitStart()).isEqualTo(visitDate.withHour(15).withMinute(0));
+        assertThat(loadedVisit.getVisitEnd()).isEqualTo(visitDate.withHour(15).withMinute(30));
+    }
+
+    @Test
+    void test_visitChangedByOtherUser_conflictWithCurrentTimes() throws InterruptedException {
+        // given: the visit is moved by another user after it was displayed
+        Integer displayedVersion = visit.getVersion();
+        Visit changedVisit = loadVisit();
+        changedVisit.setVisitStart(visitDate.withHour(9).withMinute(0));
+        changedVisit.setVisitEnd(visitDate.withHour(9).withMinute(30));
+        dataManager.save(changedVisit);
+
+        // when:
+        visitRescheduler.reschedule(visit.getId(), displayedVersion,
+                visitDate.withHour(15).withMinute(0), visitDate.withHour(15).withMinute(30), results::add);
+
+        // then: the change of the other user is kept and reported
+        VisitRescheduleResult result = awaitResult();
+        assertThat(result.conflict()).isTrue();
+        assertThat(result.visitStart()).isEqualTo(visitDate.withHour(9).withMinute(0));
+        assertThat(result.version()).isEqualTo(displayedVersion + 1);
+        assertThat(loadVisit().getVisitStart()).isEqualTo(visitDate.withHour(9).withMinute(0));
+    }
+
+    @Test
+    void test_visitDeleted_conflictWithoutTimes() throws InterruptedException {
+        // given:
+        dataManager.remove(Id.of(visit));
+
+        // when:
+        visitRescheduler.reschedule(visit.getId(), visit.getVersion(),
+                visitDate.withHour(15).withMinute(0), visitDate.withHour(15).withMinute(30), results::add);
+
+        // then:
+        VisitRescheduleResult result = awaitResult();
+        assertThat(result.conflict()).isTrue();
+        assertThat(result.visitStart()).isNull();
+        assertThat(result.version()).isNull();
+        visit = null;
+    }
+
+    @Test
+    void test_reschedulesDuringWrite_onlyLatestWritten() throws InterruptedException {
+        // given: the result handler of the first reschedule blocks the write until two more reschedules arrived
+        CountDownLatch release = new CountDownLatch(1);
+        visitRescheduler.reschedule(visit.getId(), visit.getVersion(),
+                visitDate.withHour(14).withMinute(0), visitDate.withHour(14).withMinute(30), result -> {
+                    results.add(result);
+                    awaitQuietly(release);
+                });
+        VisitRescheduleResult firstResult = awaitResult();
+
+        // when:
+        visitRescheduler.reschedule(visit.getId(), visit.getVersion(),
+                visitDate.withHour(15).withMinute(0), visitDate.withHour(15).withMinute(30), results::add);
+        visitRescheduler.reschedule(visit.getId(), visit.getVersion(),
+                visitDate.withHour(16).withMinute(0), visitDate.withHour(16).withMinute(30), results::add);
+        release.countDown();
+
+        // then: the latest reschedule is based on the first write, the superseded one is not reported
+        VisitRescheduleResult latestResult = awaitResult();
+        assertThat(firstResult.conflict()).isFalse();
+        assertThat(latestResult.conflict()).isFalse();
+        assertThat(latestResult.visitStart()).isEqualTo(visitDate.withHour(16).withMinute(0));
+        assertThat(latestResult.version()).isEqualTo(firstResult.version() + 1);
+        assertThat(results.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(loadVisit().getVisitStart()).isEqualTo(visitDate.withHour(16).withMinute(0));
+    }
+
+    @Test
+    void test_conflictDuringWrite_coalescedReschedulesReportConflict() throws InterruptedException {
+        // given: the visit was changed by another user, and the write of the conflict is blocked by its handler
+        Integer displayedVersion = visit.getVersion();
+        Visit changedVisit = loadVisit();
+        changedVisit.setVisitStart(visitDate.withHour(9).withMinute(0));
+        changedVisit.setVisitEnd(visitDate.withHour(9).withMinute(30));
+        dataManager.save(changedVisit);
+
+        CountDownLatch release = new CountDownLatch(1);
+        visitRescheduler.reschedule(visit.getId(), displayedVersion,
+                visitDate.withHour(14).withMinute(0), visitDate.withHour(14).withMinute(30), result -> {
+                    results.add(result);
+                    awaitQuietly(release);
+                });
+        VisitRescheduleResult firstResult = awaitResult();
+
+        // when: another reschedule based on the same outdated version arrives
+        visitRescheduler.reschedule(visit.getId(), displayedVersion,
+                visitDate.withHour(15).withMinute(0), visitDate.withHour(15).withMinute(30), results::add);
+        release.countDown();
+
+        // then:
+        VisitRescheduleResult coalescedResult = awaitResult();
+        assertThat(firstResult.conflict()).isTrue();
+        assertThat(coalescedResult.conflict()).isTrue();
+        assertThat(loadVisit().getVisitStart()).isEqualTo(visitDate.withHour(9).withMinute(0));
+    }
+
+    private VisitRescheduleResult awaitResult() throws InterruptedException {
+        VisitRescheduleResult result = results.poll(10, TimeUnit.SECONDS);
+        assertThat(result).isNotNull();
+        return result;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Visit loadVisit() {
+        return dataManager.load(Visit.class).id(visit.getId()).one();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (visit != null) {
+            dataManager.remove(Id.of(visit));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.jmix.petclinic.security;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.petclinic.test_support.AuthenticatedAsAdmin;
+import io.jmix.security.role.assignment.RoleAssignmentRoleType;
+import io.jmix.securitydata.entity.RoleAssignmentEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration test for RoleMembershipIndex
+ */
+@SpringBootTest
+@ExtendWith(AuthenticatedAsAdmin.class)
+public class RoleMembershipIndexTest {
+
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    RoleMembershipIndex roleMembershipIndex;
+
+    List<RoleAssignmentEntity> createdRoleAssignments = new ArrayList<>();
+    private String username;
+
+    @BeforeEach
+    void setUp() {
+        username = "test-user-" + UUID.randomUUID();
+        // the index is built before the changes of the test
+        roleMembershipIndex.getUsernames(NurseRole.CODE);
+    }
+
+    @Test
+    void test_roleAssignmentCreated_usernameIndexed() {
+        // when:
+        saveRoleAssignment(NurseRole.CODE, RoleAssignmentRoleType.RESOURCE);
+
+        // then:
+        assertThat(roleMembershipIndex.getUsernames(NurseRole.CODE)).contains(username);
+    }
+
+    @Test
+    void test_rowLevelRoleAssignment_notIndexed() {
+        // when:
+        saveRoleAssignment(NurseRole.CODE, RoleAssignmentRoleType.ROW_LEVEL);
+
+        // then:
+        assertThat(roleMembershipIndex.getUsernames(NurseRole.CODE)).doesNotContain(username);
+    }
+
+    @Test
+    void test_roleCodeChanged_usernameMovedToNewRole() {
+        // given:
+        RoleAssignmentEntity roleAssignment = saveRoleAssignment(NurseRole.CODE, RoleAssignmentRoleType.RESOURCE);
+
+        // when:
+        RoleAssignmentEntity loadedRoleAssignment = dataManager.load(Id.of(roleAssignment)).one();
+        loadedRoleAssignment.setRoleCode(UiMinimalRole.CODE);
+        dataManager.save(loadedRoleAssignment);
+
+        // then:
+        assertThat(roleMembershipIndex.getUsernames(NurseRole.CODE)).doesNotContain(username);
+        assertThat(roleMembershipIndex.getUsernames(UiMinimalRole.CODE)).contains(username);
+    }
+
+    @Test
+    void test_roleAssignedTwice_usernameIndexedUntilBothAreRemoved() {
+        // given:
+        RoleAssignmentEntity firstRoleAssignment = saveRoleAssignment(NurseRole.CODE, RoleAssignmentRoleType.RESOURCE);
+        RoleAssignmentEntity secondRoleAssignment = saveRoleAssignment(NurseRole.CODE, RoleAssignmentRoleType.RESOURCE);
+
+        // when:
+        removeRoleAssignment(firstRoleAssignment);
+
+        // then:
+        assertThat(roleMembershipIndex.getUsernames(NurseRole.CODE)).contains(username);
+
+        // when:
+        removeRoleAssignment(secondRoleAssignment);
+
+        // then:
+        assertThat(roleMembershipIndex.getUsernames(NurseRole.CODE)).doesNotContain(username);
+    }
+
+    private RoleAssignmentEntity saveRoleAssignment(String roleCode, String roleType) {
+        RoleAssignmentEntity roleAssignment = dataManager.create(RoleAssignmentEntity.class);
+        roleAssignment.setUsername(username);
+        roleAssignment.setRoleCode(roleCode);
+        roleAssignment.setRoleType(roleType);
+        RoleAssignmentEntity savedRoleAssignment = dataManager.save(roleAssignment);
+        createdRoleAssignments.add(savedRoleAssignment);
+        return savedRoleAssignment;
+    }
+
+    private void removeRoleAssignment(RoleAssignmentEntity roleAssignment) {
+        dataManager.remove(Id.of(roleAssignment));
+        createdRoleAssignments.remove(roleAssignment);
+    }
+
+    @AfterEach
+    void tearDown() {
+        createdRoleAssignments.forEach(it -> dataManager.remove(Id.of(it)));
+    }
+}
@@ -0,0 +1,198 @@
+package io.jmix.petclinic.view.visit;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.core.LoadContext;
+import io.jmix.core.Metadata;
+import io.jmix.petclinic.EmployeeRepository;
+import io.jmix.petclinic.entity.pet.Pet;
+import io.jmix.petclinic.entity.visit.Visit;
+import io.jmix.petclinic.entity.visit.VisitTreatmentStatus;
+import io.jmix.petclinic.entity.visit.VisitType;
+import io.jmix.petclinic.test_support.AuthenticatedAsAdmin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration test for VisitKeysetPagination
+ */
+@SpringBootTest
+@ExtendWith(AuthenticatedAsAdmin.class)
+class VisitKeysetPaginationTest {
+
+    private static final int PAGE_SIZE = 3;
+
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    Metadata metadata;
+    @Autowired
+    EmployeeRepository employeeRepository;
+
+    List<Visit> createdVisits = new ArrayList<>();
+    private String description;
+    private long idPrefix;
+    private VisitKeysetPagination pagination;
+
+    @BeforeEach
+    void setUp() {
+        description = "Keyset pagination test " + UUID.randomUUID();
+        pagination = new VisitKeysetPagination(dataManager, PAGE_SIZE);
+        // positive parts only, so that the database and UUID.compareTo order the IDs the same way
+        idPrefix = new SplittableRandom().nextLong() & Long.MAX_VALUE;
+
+        LocalDateTime visitStart = LocalDateTime.now().plusYears(300).withNano(0);
+
+        // two visits without start, five visits with the same start and three with distinct starts
+        Stream.of(null, null,
+                        visitStart, visitStart, visitStart, visitStart, visitStart,
+                        visitStart.minusHours(1), visitStart.plusHours(1), visitStart.plusHours(2))
+                .forEach(start -> createdVisits.add(dataManager.save(createVisit(start))));
+    }
+
+    @Test
+    void test_nextPages_containAllVisitsInKeysetOrder() {
+        // when:
+        List<List<Visit>> pages = loadAllPagesForward();
+
+        // then: visits without start come first, ties on the start are ordered by id
+        assertThat(pages).extracting(List::size).containsExactly(3, 3, 3, 1);
+        assertThat(pages.stream().flatMap(List::stream).map(Visit::getId))
+                .containsExactlyElementsOf(expectedOrder());
+        assertThat(pagination.getTotalCount()).isEqualTo(10);
+        assertThat(pagination.hasNextPage()).isFalse();
+        assertThat(pagination.getFirstRowNumber()).isEqualTo(10);
+    }
+
+    @Test
+    void test_previousPages_returnTheSamePagesAsBefore() {
+        // given:
+        List<List<Visit>> forwardPages = loadAllPagesForward();
+
+        // when: paging back from the last page
+        List<List<Visit>> backwardPages = new ArrayList<>();
+        while (pagination.hasPreviousPage()) {
+            backwardPages.add(0, pagination.loadPreviousPage(loadContext()));
+        }
+
+        // then:
+        assertThat(backwardPages).hasSize(3);
+        for (int i = 0; i < backwardPages.size(); i++) {
+            assertThat(backwardPages.get(i)).extracting(Visit::getId)
+                    .containsExactlyElementsOf(forwardPages.get(i).stream().map(Visit::getId).toList());
+        }
+        assertThat(pagination.getFirstRowNumber()).isEqualTo(1);
+        assertThat(pagination.hasNextPage()).isTrue();
+    }
+
+    @Test
+    void test_pageBoundaryWithinTies_noVisitSkippedOrRepeated() {
+        // given: the first and the second page end within the visits with the same start
+        List<Visit> firstPage = pagination.loadFirstPage(loadContext());
+        List<Visit> secondPage = pagination.loadNextPage(loadContext());
+
+        // then:
+        assertThat(Stream.concat(firstPage.stream(), secondPage.stream()).map(Visit::getId))
+                .doesNotHaveDuplicates()
+                .containsExactlyElementsOf(expectedOrder().subList(0, 6));
+    }
+
+    @Test
+    void test_removedVisit_updatedTotalCount() {
+        // given:
+        pagination.loadFirstPage(loadContext());
+
+        // when:
+        Visit removedVisit = createdVisits.remove(createdVisits.size() - 1);
+        dataManager.remove(Id.of(removedVisit));
+        pagination.updateTotalCount(loadContext());
+
+        // then:
+        assertThat(pagination.getTotalCount()).isEqualTo(9);
+        assertThat(pagination.getFirstRowNumber()).isEqualTo(1);
+    }
+
+    @Test
+    void test_consecutiveRanges_continueAfterThePreviousRange() {
+        // when:
+        List<Visit> visits = new ArrayList<>();
+        for (int offset = 0; offset < 10; offset += 4) {
+            visits.addAll(pagination.load(loadContext(), offset, 4));
+        }
+
+        // then:
+        assertThat(visits).extracting(Visit::getId)
+                .containsExactlyElementsOf(expectedOrder());
+    }
+
+    @Test
+    void test_rangeWithoutPreviousRange_loadedByOffset() {
+        // when: the ranges start within the visits without start and within the visits with the same start
+        List<Visit> rangeFromFirstVisit = pagination.load(loadContext(), 1, 3);
+        List<Visit> rangeWithinTies = pagination.load(loadContext(), 5, 3);
+
+        // then:
+        assertThat(rangeFromFirstVisit).extracting(Visit::getId)
+                .containsExactlyElementsOf(expectedOrder().subList(1, 4));
+        assertThat(rangeWithinTies).extracting(Visit::getId)
+                .containsExactlyElementsOf(expectedOrder().subList(5, 8));
+    }
+
+    private List<List<Visit>> loadAllPagesForward() {
+        List<List<Visit>> pages = new ArrayList<>();
+        pages.add(pagination.loadFirstPage(loadContext()));
+        while (pagination.hasNextPage()) {
+            pages.add(pagination.loadNextPage(loadContext()));
+        }
+        return pages;
+    }
+
+    private List<UUID> expectedOrder() {
+        return createdVisits.stream()
+                .sorted(Comparator.comparing(Visit::getVisitStart, Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparing(Visit::getId))
+                .map(Visit::getId)
+                .toList();
+    }
+
+    private LoadContext<Visit> loadContext() {
+        LoadContext<Visit> loadContext = new LoadContext<>(metadata.getClass(Visit.class));
+        loadContext.setQuery(new LoadContext.Query("select e from petclinic_Visit e where e.description = :description")
+                .setParameter("description", description));
+        return loadContext;
+    }
+
+    private Visit createVisit(LocalDateTime visitStart) {
+        Visit visit = dataManager.create(Visit.class);
+        // descending IDs, so that the order of the ties differs from the order of creation
+        visit.setId(new UUID(idPrefix, 100 - createdVisits.size()));
+        visit.setVisitStart(visitStart);
+        visit.setVisitEnd(visitStart != null ? visitStart.plusMinutes(30) : null);
+        visit.setType(VisitType.REGULAR_CHECKUP);
+        visit.setDescription(description);
+        visit.setPet(dataManager.load(Pet.class).all().maxResults(1).one());
+        visit.setTreatmentStatus(VisitTreatmentStatus.UPCOMING);
+        // no automatic nurse assignment
+        visit.setAssignedNurse(employeeRepository.findAllNurses().get(0));
+        return visit;
+    }
+
+    @AfterEach
+    void tearDown() {
+        createdVisits.forEach(it -> dataManager.remove(Id.of(it)));
+    }
+}
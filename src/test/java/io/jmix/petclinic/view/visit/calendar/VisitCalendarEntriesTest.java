@@ -0,0 +1,147 @@
+package io.jmix.petclinic.view.visit.calendar;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.petclinic.EmployeeRepository;
+import io.jmix.petclinic.entity.pet.Pet;
+import io.jmix.petclinic.entity.visit.Visit;
+import io.jmix.petclinic.entity.visit.VisitTreatmentStatus;
+import io.jmix.petclinic.entity.visit.VisitType;
+import io.jmix.petclinic.test_support.AuthenticatedAsAdmin;
+import io.jmix.petclinic.visit.VisitBulkLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration test for the invalidation of the months cached by VisitCalendarEntries
+ */
+@SpringBootTest
+@ExtendWith(AuthenticatedAsAdmin.class)
+public class VisitCalendarEntriesTest {
+
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    VisitCalendarEntries visitCalendarEntries;
+    @Autowired
+    VisitBulkLoader visitBulkLoader;
+    @Autowired
+    EmployeeRepository employeeRepository;
+
+    List<Visit> createdVisits = new ArrayList<>();
+    private LocalDateTime visitDate;
+    private YearMonth month;
+
+    @BeforeEach
+    void setUp() {
+        visitDate = LocalDateTime.now().plusDays(new Random().nextLong(10000, 100000))
+                .withDayOfMonth(10).withHour(10).withMinute(0).withSecond(0).withNano(0);
+        month = YearMonth.from(visitDate);
+    }
+
+    @Test
+    void test_visitCreated_monthInvalidated() {
+        // given:
+        loadVisitIds(month);
+
+        // when:
+        Visit visit = saveVisit(visitDate);
+
+        // then:
+        assertThat(loadVisitIds(month)).contains(visit.getId());
+    }
+
+    @Test
+    void test_visitMovedToOtherMonth_bothMonthsInvalidated() {
+        // given:
+        Visit visit = saveVisit(visitDate);
+        YearMonth otherMonth = month.plusMonths(3);
+        assertThat(loadVisitIds(month)).contains(visit.getId());
+        assertThat(loadVisitIds(otherMonth)).doesNotContain(visit.getId());
+
+        // when:
+        Visit loadedVisit = dataManager.load(Visit.class).id(visit.getId()).one();
+        loadedVisit.setVisitStart(visitDate.plusMonths(3));
+        loadedVisit.setVisitEnd(visitDate.plusMonths(3).plusMinutes(30));
+        dataManager.save(loadedVisit);
+
+        // then:
+        assertThat(loadVisitIds(month)).doesNotContain(visit.getId());
+        assertThat(loadVisitIds(otherMonth)).contains(visit.getId());
+    }
+
+    @Test
+    void test_visitDeleted_monthInvalidated() {
+        // given:
+        Visit visit = saveVisit(visitDate);
+        assertThat(loadVisitIds(month)).contains(visit.getId());
+
+        // when:
+        dataManager.remove(Id.of(visit));
+        createdVisits.remove(visit);
+
+        // then:
+        assertThat(loadVisitIds(month)).doesNotContain(visit.getId());
+    }
+
+    @Test
+    void test_visitsBulkInserted_monthInvalidated() {
+        // given:
+        loadVisitIds(month);
+
+        // when:
+        Visit visit = createVisit(visitDate);
+        visitBulkLoader.insert(List.of(visit));
+        createdVisits.add(visit);
+
+        // then:
+        assertThat(loadVisitIds(month)).contains(visit.getId());
+    }
+
+    private List<UUID> loadVisitIds(YearMonth month) {
+        return visitCalendarEntries.load(
+                        month.atDay(1).atStartOfDay(),
+                        month.plusMonths(1).atDay(1).atStartOfDay(),
+                        EnumSet.allOf(VisitType.class))
+                .stream()
+                .map(VisitCalendarEntry::visitId)
+                .toList();
+    }
+
+    private Visit saveVisit(LocalDateTime visitStart) {
+        Visit savedVisit = dataManager.save(createVisit(visitStart));
+        createdVisits.add(savedVisit);
+        return savedVisit;
+    }
+
+    private Visit createVisit(LocalDateTime visitStart) {
+        Visit visit = dataManager.create(Visit.class);
+        visit.setVisitStart(visitStart);
+        visit.setVisitEnd(visitStart.plusMinutes(30));
+        visit.setType(VisitType.REGULAR_CHECKUP);
+        visit.setPet(dataManager.load(Pet.class).all().maxResults(1).one());
+        visit.setTreatmentStatus(VisitTreatmentStatus.UPCOMING);
+        // no automatic nurse assignment
+        visit.setAssignedNurse(employeeRepository.findAllNurses().get(0));
+        return visit;
+    }
+
+    @AfterEach
+    void tearDown() {
+        createdVisits.forEach(it -> dataManager.remove(Id.of(it)));
+    }
+}
@@ -0,0 +1,169 @@
+package io.jmix.petclinic.visit;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.TimeSource;
+import io.jmix.petclinic.EmployeeRepository;
+import io.jmix.petclinic.entity.User;
+import io.jmix.petclinic.test_support.AuthenticatedAsAdmin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration test for PopulationTestDataCreation. The amounts are raised relative to the generated entities that
+ * already exist, and only the entities generated by the test are removed afterwards.
+ */
+@SpringBootTest
+@ExtendWith(AuthenticatedAsAdmin.class)
+class PopulationTestDataCreationTest {
+
+    private static final String PET_TYPES = "select ID from PETCLINIC_PET_TYPE where NAME like 'Type %'";
+    private static final String VETERINARIANS = "select ID from PETCLINIC_VETERINARIAN where LAST_NAME like '% %'";
+    private static final String NURSES = "select ID from PETCLINIC_USER where USERNAME like 'nurse-%'";
+    private static final String OWNERS = "select ID from PETCLINIC_OWNER where EMAIL like 'owner-%@example.com'";
+
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    TimeSource timeSource;
+    @Autowired
+    EmployeeRepository employeeRepository;
+
+    private JdbcTemplate jdbcTemplate;
+    private PetclinicPopulationTestdataProperties populationProperties;
+    private PopulationTestDataCreation populationTestDataCreation;
+
+    private List<UUID> existingPetTypes;
+    private List<UUID> existingVeterinarians;
+    private List<UUID> existingNurses;
+    private List<UUID> existingOwners;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        existingPetTypes = ids(PET_TYPES);
+        existingVeterinarians = ids(VETERINARIANS);
+        existingNurses = ids(NURSES);
+        existingOwners = ids(OWNERS);
+
+        populationProperties = new PetclinicPopulationTestdataProperties();
+        populationProperties.setPetTypes(existingPetTypes.size() + 2);
+        populationProperties.setVeterinarians(existingVeterinarians.size() + 2);
+        populationProperties.setNurses(existingNurses.size() + 2);
+        populationProperties.setOwners(existingOwners.size() + 2);
+        populationProperties.setMaxPetsPerOwner(3);
+
+        PetclinicTestdataProperties testdataProperties = new PetclinicTestdataProperties();
+        testdataProperties.setSeed(4711L);
+        testdataProperties.setBatchSize(10);
+
+        populationTestDataCreation = new PopulationTestDataCreation(
+                populationProperties, testdataProperties, dataManager, timeSource);
+    }
+
+    @Test
+    void test_createData_dataOfTestdataSqlNotCounted() {
+        // when:
+        populationTestDataCreation.createData();
+
+        // then:
+        assertThat(ids(PET_TYPES)).hasSize(existingPetTypes.size() + 2);
+        assertThat(ids(VETERINARIANS)).hasSize(existingVeterinarians.size() + 2);
+        assertThat(ids(NURSES)).hasSize(existingNurses.size() + 2);
+        assertThat(ids(OWNERS)).hasSize(existingOwners.size() + 2);
+    }
+
+    @Test
+    void test_reRun_nothingCreated() {
+        // given:
+        populationTestDataCreation.createData();
+        List<UUID> owners = ids(OWNERS);
+        List<UUID> nurses = ids(NURSES);
+
+        // when:
+        populationTestDataCreation.createData();
+
+        // then:
+        assertThat(ids(OWNERS)).containsExactlyInAnyOrderElementsOf(owners);
+        assertThat(ids(NURSES)).containsExactlyInAnyOrderElementsOf(nurses);
+    }
+
+    @Test
+    void test_reRunWithRaisedAmount_onlyMissingCreated() {
+        // given:
+        populationTestDataCreation.createData();
+        List<UUID> owners = ids(OWNERS);
+
+        // when:
+        populationProperties.setOwners(populationProperties.getOwners() + 1);
+        populationTestDataCreation.createData();
+
+        // then:
+        assertThat(ids(OWNERS))
+                .hasSize(owners.size() + 1)
+                .containsAll(owners);
+    }
+
+    @Test
+    void test_reRunAfterSoftDelete_deletedNurseNotCreatedAgain() {
+        // given:
+        populationTestDataCreation.createData();
+        List<UUID> nurses = ids(NURSES);
+        UUID createdNurseId = nurses.stream()
+                .filter(id -> !existingNurses.contains(id))
+                .findFirst()
+                .orElseThrow();
+        dataManager.remove(dataManager.load(User.class).id(createdNurseId).one());
+
+        // when:
+        populationTestDataCreation.createData();
+
+        // then: the number of the soft deleted nurse is still taken, because its ID would be generated again
+        assertThat(ids(NURSES)).containsExactlyInAnyOrderElementsOf(nurses);
+    }
+
+    private List<UUID> ids(String idsQuery) {
+        return jdbcTemplate.queryForList(idsQuery, UUID.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        List<UUID> createdOwners = created(OWNERS, existingOwners);
+        createdOwners.forEach(id -> jdbcTemplate.update("delete from PETCLINIC_PET where OWNER_ID = ?", id));
+        createdOwners.forEach(id -> jdbcTemplate.update("delete from PETCLINIC_OWNER where ID = ?", id));
+
+        created(PET_TYPES, existingPetTypes)
+                .forEach(id -> jdbcTemplate.update("delete from PETCLINIC_PET_TYPE where ID = ?", id));
+
+        created(VETERINARIANS, existingVeterinarians).forEach(id -> {
+            jdbcTemplate.update("delete from PETCLINIC_VET_SPECIALTY_LINK where VETERINARIAN_ID = ?", id);
+            jdbcTemplate.update("delete from PETCLINIC_VETERINARIAN where ID = ?", id);
+        });
+
+        created(NURSES, existingNurses).forEach(id -> {
+            String username = jdbcTemplate.queryForObject(
+                    "select USERNAME from PETCLINIC_USER where ID = ?", String.class, id);
+            jdbcTemplate.update("delete from SEC_ROLE_ASSIGNMENT where USERNAME = ?", username);
+            jdbcTemplate.update("delete from PETCLINIC_USER where ID = ?", id);
+        });
+        employeeRepository.invalidateCache();
+    }
+
+    private List<UUID> created(String idsQuery, List<UUID> existingIds) {
+        return ids(idsQuery).stream()
+                .filter(id -> !existingIds.contains(id))
+                .toList();
+    }
+}
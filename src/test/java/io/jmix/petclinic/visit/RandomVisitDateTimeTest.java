@@ -0,0 +1,59 @@
+package io.jmix.petclinic.visit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RandomVisitDateTimeTest {
+
+    RandomVisitDateTime randomVisitDateTime = new RandomVisitDateTime();
+
+    @Test
+    void test_sameSeed_producesSameVisitRange() {
+        // given: a weekday
+        LocalDate monday = LocalDate.of(2025, 2, 17);
+
+        // when: two ranges are generated with generators of the same seed
+        VisitEventRange first = randomVisitDateTime.randomVisitEventRange(monday, new SplittableRandom(42));
+        VisitEventRange second = randomVisitDateTime.randomVisitEventRange(monday, new SplittableRandom(42));
+
+        // then:
+        assertThat(first).isEqualTo(second);
+    }
+
+    @Test
+    void test_sameSeedForDay_producesSameSequenceOfRanges() {
+        LocalDate monday = LocalDate.of(2025, 2, 17);
+
+        var firstRandom = VisitTestDataCreation.randomForDay(42, monday);
+        var secondRandom = VisitTestDataCreation.randomForDay(42, monday);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(randomVisitDateTime.randomVisitEventRange(monday, firstRandom))
+                    .isEqualTo(randomVisitDateTime.randomVisitEventRange(monday, secondRandom));
+        }
+    }
+
+    @Test
+    void test_differentDays_produceDifferentSequences() {
+        // given: the generators of consecutive days of the same master seed
+        var monday = VisitTestDataCreation.randomForDay(42, LocalDate.of(2025, 2, 17));
+        var tuesday = VisitTestDataCreation.randomForDay(42, LocalDate.of(2025, 2, 18));
+
+        // then: the days do not share their random values, e.g. for the visit IDs
+        assertThat(LongStream.generate(monday::nextLong).limit(10).toArray())
+                .doesNotContainAnyElementsOf(LongStream.generate(tuesday::nextLong).limit(10).boxed().toList());
+    }
+
+    @Test
+    void test_sunday_noVisitRange() {
+        LocalDate sunday = LocalDate.of(2025, 2, 16);
+
+        assertThat(randomVisitDateTime.randomVisitEventRange(sunday, new SplittableRandom(42)).isEmpty())
+                .isTrue();
+    }
+}
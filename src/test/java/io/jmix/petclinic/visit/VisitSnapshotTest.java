@@ -0,0 +1,183 @@
+package io.jmix.petclinic.visit;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.Id;
+import io.jmix.petclinic.EmployeeRepository;
+import io.jmix.petclinic.entity.pet.Pet;
+import io.jmix.petclinic.entity.visit.Visit;
+import io.jmix.petclinic.entity.visit.VisitTreatmentStatus;
+import io.jmix.petclinic.entity.visit.VisitType;
+import io.jmix.petclinic.test_support.AuthenticatedAsAdmin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration test for VisitSnapshot. The restore runs in a transaction that is rolled back after the restored
+ * visits are checked, so that the visits of the database are not changed.
+ */
+@SpringBootTest
+@ExtendWith(AuthenticatedAsAdmin.class)
+class VisitSnapshotTest {
+
+    /**
+     * A Monday, so that the visits of the test are on known weekdays.
+     */
+    private static final LocalDate EXPORT_DAY = LocalDate.of(2399, 12, 27);
+
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    VisitSnapshot visitSnapshot;
+    @Autowired
+    EmployeeRepository employeeRepository;
+
+    @TempDir
+    Path tempDir;
+
+    List<Visit> createdVisits = new ArrayList<>();
+    private String description;
+    private Visit pastVisit;
+    private Visit visitOfExportDay;
+    private Visit upcomingVisit;
+    private Visit laterVisit;
+
+    @BeforeEach
+    void setUp() {
+        description = "Snapshot test " + UUID.randomUUID();
+        pastVisit = saveVisit(EXPORT_DAY.minusDays(14), VisitTreatmentStatus.DONE);
+        visitOfExportDay = saveVisit(EXPORT_DAY, VisitTreatmentStatus.IN_PROGRESS);
+        upcomingVisit = saveVisit(EXPORT_DAY.plusDays(3), VisitTreatmentStatus.UPCOMING);
+        laterVisit = saveVisit(EXPORT_DAY.plusDays(30), VisitTreatmentStatus.UPCOMING);
+    }
+
+    @Test
+    void test_restoreOnExportDay_visitsUnchanged() {
+        // given:
+        Path snapshotFile = tempDir.resolve("visits.bin");
+        int exported = visitSnapshot.export(snapshotFile, EXPORT_DAY);
+
+        // when:
+        Map<UUID, RestoredVisit> restored = restoreAndLoad(snapshotFile, EXPORT_DAY, exported);
+
+        // then:
+        for (Visit visit : List.of(pastVisit, visitOfExportDay, upcomingVisit, laterVisit)) {
+            assertThat(restored.get(visit.getId())).isEqualTo(new RestoredVisit(
+                    visit.getId(),
+                    visit.getVisitNumber(),
+                    visit.getPet().getId(),
+                    visit.getVisitStart(),
+                    visit.getVisitEnd(),
+                    visit.getAssignedNurse().getId(),
+                    visit.getTreatmentStatus().getId()));
+        }
+    }
+
+    @Test
+    void test_restoreTenDaysLater_visitsShiftedByOneWeek() {
+        // given:
+        Path snapshotFile = tempDir.resolve("visits.bin");
+        int exported = visitSnapshot.export(snapshotFile, EXPORT_DAY);
+        LocalDate restoreDay = EXPORT_DAY.plusDays(10);
+
+        // when:
+        Map<UUID, RestoredVisit> restored = restoreAndLoad(snapshotFile, restoreDay, exported);
+
+        // then: the visits keep their weekday
+        for (Visit visit : List.of(pastVisit, visitOfExportDay, upcomingVisit, laterVisit)) {
+            assertThat(restored.get(visit.getId()).visitStart()).isEqualTo(visit.getVisitStart().plusWeeks(1));
+            assertThat(restored.get(visit.getId()).visitEnd()).isEqualTo(visit.getVisitEnd().plusWeeks(1));
+        }
+
+        // and: the treatment status matches the shifted visit start
+        assertThat(restored.get(pastVisit.getId()).treatmentStatus())
+                .isEqualTo(VisitTreatmentStatus.DONE.getId());
+        assertThat(restored.get(visitOfExportDay.getId()).treatmentStatus())
+                .isEqualTo(VisitTreatmentStatus.DONE.getId());
+        assertThat(restored.get(upcomingVisit.getId()).treatmentStatus())
+                .isEqualTo(VisitTreatmentStatus.IN_PROGRESS.getId());
+        assertThat(restored.get(laterVisit.getId()).treatmentStatus())
+                .isEqualTo(VisitTreatmentStatus.UPCOMING.getId());
+
+        // and: the year of the visit number is the year of the shifted visit start
+        assertThat(restored.get(upcomingVisit.getId()).visitNumber())
+                .isEqualTo(upcomingVisit.getVisitNumber().replace("V-2399-", "V-2400-"));
+    }
+
+    /**
+     * Replaces all visits by the ones of the snapshot, loads the visits of the test and rolls back.
+     */
+    private Map<UUID, RestoredVisit> restoreAndLoad(Path snapshotFile, LocalDate today, int exported) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            jdbcTemplate.update("delete from PETCLINIC_VISIT");
+
+            assertThat(visitSnapshot.restore(snapshotFile, today)).isEqualTo(exported);
+
+            return jdbcTemplate.query("""
+                                    select ID, VISIT_NUMBER, PET_ID, VISIT_START, VISIT_END, ASSIGNED_NURSE_ID,
+                                           TREATMENT_STATUS
+                                    from PETCLINIC_VISIT
+                                    where DESCRIPTION = ?""",
+                            (rs, rowNum) -> new RestoredVisit(
+                                    rs.getObject("ID", UUID.class),
+                                    rs.getString("VISIT_NUMBER"),
+                                    rs.getObject("PET_ID", UUID.class),
+                                    rs.getObject("VISIT_START", LocalDateTime.class),
+                                    rs.getObject("VISIT_END", LocalDateTime.class),
+                                    rs.getObject("ASSIGNED_NURSE_ID", UUID.class),
+                                    rs.getString("TREATMENT_STATUS")),
+                            description)
+                    .stream()
+                    .collect(Collectors.toMap(RestoredVisit::id, Function.identity()));
+        });
+    }
+
+    private Visit saveVisit(LocalDate date, VisitTreatmentStatus treatmentStatus) {
+        Visit visit = dataManager.create(Visit.class);
+        visit.setVisitStart(date.atTime(10, 0));
+        visit.setVisitEnd(date.atTime(10, 30));
+        visit.setType(VisitType.REGULAR_CHECKUP);
+        visit.setDescription(description);
+        visit.setPet(dataManager.load(Pet.class).all().maxResults(1).one());
+        visit.setTreatmentStatus(treatmentStatus);
+        // no automatic nurse assignment
+        visit.setAssignedNurse(employeeRepository.findAllNurses().get(0));
+        Visit savedVisit = dataManager.save(visit);
+        createdVisits.add(savedVisit);
+        return savedVisit;
+    }
+
+    @AfterEach
+    void tearDown() {
+        createdVisits.forEach(it -> dataManager.remove(Id.of(it)));
+    }
+
+    private record RestoredVisit(UUID id, String visitNumber, UUID petId, LocalDateTime visitStart,
+                                 LocalDateTime visitEnd, UUID assignedNurseId, String treatmentStatus) {
+    }
+}
@@ -0,0 +1,189 @@
+package io.jmix.petclinic.visit;
+
+import io.jmix.core.DataManager;
+import io.jmix.core.TimeSource;
+import io.jmix.petclinic.EmployeeRepository;
+import io.jmix.petclinic.entity.visit.NurseAssignmentQueue;
+import io.jmix.petclinic.entity.visit.Visit;
+import io.jmix.petclinic.entity.visit.VisitType;
+import io.jmix.petclinic.test_support.AuthenticatedAsAdmin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration test for VisitTestDataCreation. The visits are generated far in the future with a fixed seed
+ * and bulk loaded, so that they do not interfere with the visits of other tests.
+ */
+@SpringBootTest
+@ExtendWith(AuthenticatedAsAdmin.class)
+class VisitTestDataCreationTest {
+
+    /**
+     * A Wednesday. With 14 future days, the last day with an amount of visits is a Monday.
+     */
+    private static final LocalDate TODAY = LocalDate.of(2450, 1, 5);
+
+    @Autowired
+    DataManager dataManager;
+    @Autowired
+    DataSource dataSource;
+    @Autowired
+    TimeSource timeSource;
+    @Autowired
+    RandomVisitDateTime randomVisitDateTime;
+    @Autowired
+    EmployeeRepository employeeRepository;
+    @Autowired
+    VisitBulkLoader visitBulkLoader;
+    @Autowired
+    VisitSnapshot visitSnapshot;
+    @Autowired
+    NurseAssignmentQueue nurseAssignmentQueue;
+
+    private VisitTestDataStatus visitTestDataStatus;
+    private VisitTestDataCreation visitTestDataCreation;
+
+    @BeforeEach
+    void setUp() {
+        visitTestDataStatus = new VisitTestDataStatus();
+        visitTestDataCreation = visitTestDataCreation(visitTestDataStatus);
+    }
+
+    private VisitTestDataCreation visitTestDataCreation(VisitTestDataStatus status) {
+        PetclinicTestdataProperties testdataProperties = new PetclinicTestdataProperties();
+        testdataProperties.setVisitStartAmountPastDays(0);
+        testdataProperties.setVisitStartAmountFutureDays(14);
+        testdataProperties.setAmountPerDay(5);
+        testdataProperties.setBatchSize(100);
+        testdataProperties.setBulkLoad(true);
+        testdataProperties.setSeed(4711L);
+        testdataProperties.setParallelism(2);
+        testdataProperties.setDescriptionOptions(List.of("Regular Checkup", "Surgery", "Fever"));
+
+        return new VisitTestDataCreation(testdataProperties, timeSource, dataManager, randomVisitDateTime,
+                employeeRepository, visitBulkLoader, status, visitSnapshot, nurseAssignmentQueue);
+    }
+
+    @Test
+    void test_twoRunsWithSameSeed_sameVisits() {
+        // given:
+        visitTestDataCreation.topUpFutureDays(TODAY);
+        List<GeneratedVisit> firstRun = loadGeneratedVisits();
+        deleteGeneratedVisits();
+
+        // when:
+        visitTestDataCreation(new VisitTestDataStatus()).topUpFutureDays(TODAY);
+
+        // then:
+        assertThat(firstRun).isNotEmpty();
+        assertThat(loadGeneratedVisits()).containsExactlyElementsOf(firstRun);
+    }
+
+    @Test
+    void test_topUp_allDaysDoneAfterWrite() {
+        // when:
+        int created = visitTestDataCreation.topUpFutureDays(TODAY);
+
+        // then:
+        assertThat(visitTestDataStatus.getState()).isEqualTo(VisitTestDataStatus.State.COMPLETED);
+        assertThat(visitTestDataStatus.getDaysDone()).isEqualTo(visitTestDataStatus.getTotalDays());
+        assertThat(visitTestDataStatus.getVisitsWritten()).isEqualTo(created);
+    }
+
+    @Test
+    void test_topUpOfCompleteWindow_skipped() {
+        // given:
+        assertThat(visitTestDataCreation.topUpFutureDays(TODAY)).isPositive();
+
+        // when:
+        int created = visitTestDataCreation.topUpFutureDays(TODAY);
+
+        // then: Sundays and the days without an amount of visits are not taken as missing
+        assertThat(created).isZero();
+        assertThat(visitTestDataStatus.getState()).isEqualTo(VisitTestDataStatus.State.SKIPPED);
+    }
+
+    @Test
+    void test_topUpNextDay_onlyNewDayCreated() {
+        // given:
+        visitTestDataCreation.topUpFutureDays(TODAY);
+        LocalDate newDay = TODAY.plusDays(13);
+
+        // when:
+        int created = visitTestDataCreation.topUpFutureDays(TODAY.plusDays(1));
+
+        // then:
+        assertThat(created).isEqualTo(1);
+        assertThat(loadVisits(newDay, newDay.plusDays(1))).hasSize(1);
+    }
+
+    @Test
+    void test_topUpAfterVisitsSoftDeleted_visitsNotCreatedAgain() {
+        // given: the visits of the last day are soft deleted
+        visitTestDataCreation.topUpFutureDays(TODAY);
+        LocalDate lastDay = TODAY.plusDays(12);
+        List<Visit> visitsOfLastDay = loadVisits(lastDay, lastDay.plusDays(1));
+        assertThat(visitsOfLastDay).isNotEmpty();
+        visitsOfLastDay.forEach(dataManager::remove);
+
+        // when:
+        int created = visitTestDataCreation.topUpFutureDays(TODAY);
+
+        // then: the visits with the same IDs are not inserted again
+        assertThat(created).isZero();
+        assertThat(loadVisits(lastDay, lastDay.plusDays(1))).isEmpty();
+    }
+
+    private List<GeneratedVisit> loadGeneratedVisits() {
+        return loadVisits(TODAY, TODAY.plusDays(30)).stream()
+                .map(visit -> new GeneratedVisit(
+                        visit.getId(),
+                        visit.getVisitStart(),
+                        visit.getVisitEnd(),
+                        visit.getPet().getId(),
+                        visit.getType(),
+                        visit.getAssignedNurse() != null ? visit.getAssignedNurse().getId() : null,
+                        visit.getDescription()))
+                .sorted(Comparator.comparing(GeneratedVisit::id))
+                .toList();
+    }
+
+    private List<Visit> loadVisits(LocalDate from, LocalDate to) {
+        return dataManager.load(Visit.class)
+                .query("select e from petclinic_Visit e where e.visitStart >= :from and e.visitStart < :to")
+                .parameter("from", from.atStartOfDay())
+                .parameter("to", to.atStartOfDay())
+                .list();
+    }
+
+    @AfterEach
+    void tearDown() {
+        deleteGeneratedVisits();
+    }
+
+    private void deleteGeneratedVisits() {
+        new JdbcTemplate(dataSource).update("delete from PETCLINIC_VISIT where VISIT_START >= ? and VISIT_START < ?",
+                TODAY.atStartOfDay(), TODAY.plusDays(30).atStartOfDay());
+    }
+
+    /**
+     * The attributes of a visit that are derived from the seed. The visit number is taken from a sequence.
+     */
+    private record GeneratedVisit(UUID id, LocalDateTime visitStart, LocalDateTime visitEnd, UUID petId,
+                                  VisitType type, UUID nurseId, String description) {
+    }
+}